@@ -1,5 +1,7 @@
 package com.daniinc.chatapp.config;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -13,12 +15,84 @@ public class ApplicationProperties {
 
     private final Liquibase liquibase = new Liquibase();
 
+    private final MessageWriter messageWriter = new MessageWriter();
+
+    private final IdGenerator idGenerator = new IdGenerator();
+
+    private final MembershipIndex membershipIndex = new MembershipIndex();
+
+    private final Notifications notifications = new Notifications();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final RecentMessages recentMessages = new RecentMessages();
+
+    private final Unread unread = new Unread();
+
+    private final Search search = new Search();
+
+    private final Export export = new Export();
+
+    private final Sync sync = new Sync();
+
+    private final Presence presence = new Presence();
+
+    private final UserSearch userSearch = new UserSearch();
+
     // jhipster-needle-application-properties-property
 
     public Liquibase getLiquibase() {
         return liquibase;
     }
 
+    public MessageWriter getMessageWriter() {
+        return messageWriter;
+    }
+
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public MembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+
+    public Notifications getNotifications() {
+        return notifications;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public RecentMessages getRecentMessages() {
+        return recentMessages;
+    }
+
+    public Unread getUnread() {
+        return unread;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public Sync getSync() {
+        return sync;
+    }
+
+    public Presence getPresence() {
+        return presence;
+    }
+
+    public UserSearch getUserSearch() {
+        return userSearch;
+    }
+
     // jhipster-needle-application-properties-property-getter
 
     public static class Liquibase {
@@ -33,5 +107,296 @@ public class ApplicationProperties {
             this.asyncStart = asyncStart;
         }
     }
+
+    public static class MessageWriter {
+
+        private int batchSize = 25;
+
+        private long maxDelayMs = 5;
+
+        private int queueCapacity = 10000;
+
+        private int callbackThreads = 4;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getMaxDelayMs() {
+            return maxDelayMs;
+        }
+
+        public void setMaxDelayMs(long maxDelayMs) {
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getCallbackThreads() {
+            return callbackThreads;
+        }
+
+        public void setCallbackThreads(int callbackThreads) {
+            this.callbackThreads = callbackThreads;
+        }
+    }
+
+    public static class IdGenerator {
+
+        private int nodeId = 0;
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(int nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    public static class MembershipIndex {
+
+        private long maxIds = 1_000_000;
+
+        public long getMaxIds() {
+            return maxIds;
+        }
+
+        public void setMaxIds(long maxIds) {
+            this.maxIds = maxIds;
+        }
+    }
+
+    public static class Notifications {
+
+        private long coalesceWindowMs = 20;
+
+        private int threads = 4;
+
+        public long getCoalesceWindowMs() {
+            return coalesceWindowMs;
+        }
+
+        public void setCoalesceWindowMs(long coalesceWindowMs) {
+            this.coalesceWindowMs = coalesceWindowMs;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class RateLimit {
+
+        public enum Action {
+            /** Silently drop the frame. */
+            DROP,
+            /** Reject the frame, the client gets a STOMP ERROR frame. */
+            ERROR,
+        }
+
+        private Action action = Action.DROP;
+
+        private final Map<String, Destination> destinations = new LinkedHashMap<>();
+
+        public Action getAction() {
+            return action;
+        }
+
+        public void setAction(Action action) {
+            this.action = action;
+        }
+
+        /**
+         * @return the limits by destination prefix, the longest matching prefix applies.
+         */
+        public Map<String, Destination> getDestinations() {
+            return destinations;
+        }
+
+        public static class Destination {
+
+            private final Bucket session = new Bucket();
+
+            private final Bucket user = new Bucket();
+
+            public Bucket getSession() {
+                return session;
+            }
+
+            public Bucket getUser() {
+                return user;
+            }
+        }
+
+        public static class Bucket {
+
+            /** Sustained rate, 0 means unlimited. */
+            private double permitsPerSecond = 0;
+
+            private int burst = 1;
+
+            public double getPermitsPerSecond() {
+                return permitsPerSecond;
+            }
+
+            public void setPermitsPerSecond(double permitsPerSecond) {
+                this.permitsPerSecond = permitsPerSecond;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+        }
+    }
+
+    public static class RecentMessages {
+
+        private int perRoom = 50;
+
+        private long maxMessages = 100_000;
+
+        public int getPerRoom() {
+            return perRoom;
+        }
+
+        public void setPerRoom(int perRoom) {
+            this.perRoom = perRoom;
+        }
+
+        public long getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(long maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+    }
+
+    public static class Unread {
+
+        private long flushIntervalMs = 1000;
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+    }
+
+    public static class Search {
+
+        private String directory = "target/search-index";
+
+        private long refreshIntervalMs = 1000;
+
+        private int rebuildBatchSize = 1000;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getRefreshIntervalMs() {
+            return refreshIntervalMs;
+        }
+
+        public void setRefreshIntervalMs(long refreshIntervalMs) {
+            this.refreshIntervalMs = refreshIntervalMs;
+        }
+
+        public int getRebuildBatchSize() {
+            return rebuildBatchSize;
+        }
+
+        public void setRebuildBatchSize(int rebuildBatchSize) {
+            this.rebuildBatchSize = rebuildBatchSize;
+        }
+    }
+
+    public static class Export {
+
+        private int fetchSize = 500;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+    }
+
+    public static class Sync {
+
+        private long settleMs = 2000;
+
+        private int retentionDays = 30;
+
+        public long getSettleMs() {
+            return settleMs;
+        }
+
+        public void setSettleMs(long settleMs) {
+            this.settleMs = settleMs;
+        }
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+    }
+
+    public static class Presence {
+
+        private long coalesceWindowMs = 500;
+
+        public long getCoalesceWindowMs() {
+            return coalesceWindowMs;
+        }
+
+        public void setCoalesceWindowMs(long coalesceWindowMs) {
+            this.coalesceWindowMs = coalesceWindowMs;
+        }
+    }
+
+    public static class UserSearch {
+
+        private long refreshIntervalMs = 60000;
+
+        public long getRefreshIntervalMs() {
+            return refreshIntervalMs;
+        }
+
+        public void setRefreshIntervalMs(long refreshIntervalMs) {
+            this.refreshIntervalMs = refreshIntervalMs;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -11,5 +11,8 @@ public final class Constants {
     public static final String SYSTEM = "system";
     public static final String DEFAULT_LANGUAGE = "hu";
 
+    // Number of ids reserved per round trip to sequence_generator; must match its increment in the Liquibase changelog
+    public static final int SEQUENCE_BLOCK_SIZE = 50;
+
     private Constants() {}
 }
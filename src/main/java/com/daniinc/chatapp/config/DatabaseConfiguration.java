@@ -1,8 +1,10 @@
 package com.daniinc.chatapp.config;
 
+import com.daniinc.chatapp.domain.SnowflakeIdGenerator;
 import java.sql.SQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -27,6 +29,18 @@ public class DatabaseConfiguration {
         this.env = env;
     }
 
+    /**
+     * Hand the node id of this instance to {@link SnowflakeIdGenerator}, which Hibernate instantiates on its own.
+     *
+     * @param applicationProperties the application properties.
+     * @return the customizer adding the node id to the Hibernate settings.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer snowflakeNodeIdCustomizer(ApplicationProperties applicationProperties) {
+        return hibernateProperties ->
+            hibernateProperties.put(SnowflakeIdGenerator.NODE_ID_SETTING, applicationProperties.getIdGenerator().getNodeId());
+    }
+
     /**
      * Open the TCP port for the H2 database, so it is available remotely.
      *
@@ -1,11 +1,16 @@
 package com.daniinc.chatapp.config;
 
 import com.daniinc.chatapp.security.AuthoritiesConstants;
+import com.daniinc.chatapp.web.websocket.RateLimitInterceptor;
+import com.daniinc.chatapp.web.websocket.SessionUserArgumentResolver;
+import com.daniinc.chatapp.web.websocket.SessionUserInterceptor;
 import java.security.Principal;
 import java.util.*;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.server.*;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -23,8 +28,22 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebsocketConfiguration(JHipsterProperties jHipsterProperties) {
+    private final SessionUserInterceptor sessionUserInterceptor;
+
+    private final SessionUserArgumentResolver sessionUserArgumentResolver;
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    public WebsocketConfiguration(
+        JHipsterProperties jHipsterProperties,
+        SessionUserInterceptor sessionUserInterceptor,
+        SessionUserArgumentResolver sessionUserArgumentResolver,
+        RateLimitInterceptor rateLimitInterceptor
+    ) {
         this.jHipsterProperties = jHipsterProperties;
+        this.sessionUserInterceptor = sessionUserInterceptor;
+        this.sessionUserArgumentResolver = sessionUserArgumentResolver;
+        this.rateLimitInterceptor = rateLimitInterceptor;
     }
 
     @Override
@@ -34,6 +53,16 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
         config.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(sessionUserInterceptor, rateLimitInterceptor);
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers) {
+        argumentResolvers.add(sessionUserArgumentResolver);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         String[] allowedOrigins = Optional.ofNullable(jHipsterProperties.getCors().getAllowedOrigins())
@@ -51,6 +80,8 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
             .setAllowedOrigins(allowedOrigins)
             .withSockJS()
             .setInterceptors(httpSessionHandshakeInterceptor());
+        // messages of a session are handled in the order they were received, so per-room sequence numbers follow the send order
+        registry.setPreserveReceiveOrder(true);
     }
 
     @Bean
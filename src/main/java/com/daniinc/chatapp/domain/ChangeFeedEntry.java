@@ -0,0 +1,132 @@
+package com.daniinc.chatapp.domain;
+
+import com.daniinc.chatapp.domain.enumeration.ChangeKind;
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * An entry of the change feed: a change of a chat room, recorded in the transaction making it.
+ * <p>
+ * Ids are allocated by {@link SnowflakeIdGenerator}, so entries sort by time and the id of the last entry a client has seen
+ * is its sync cursor. Message changes are scoped to their room, membership changes also name the user who joined or left.
+ * Entries are written by {@link com.daniinc.chatapp.service.ChangeFeedService} and never updated.
+ */
+@Entity
+@Table(name = "change_feed")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ChangeFeedEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @SnowflakeId
+    @Column(name = "id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, updatable = false)
+    private ChangeKind kind;
+
+    @Column(name = "chat_room_id", nullable = false, updatable = false)
+    private Long chatRoomId;
+
+    @Column(name = "user_id", updatable = false)
+    private Long userId;
+
+    @Column(name = "message_id", updatable = false)
+    private Long messageId;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public ChangeFeedEntry id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ChangeKind getKind() {
+        return this.kind;
+    }
+
+    public ChangeFeedEntry kind(ChangeKind kind) {
+        this.setKind(kind);
+        return this;
+    }
+
+    public void setKind(ChangeKind kind) {
+        this.kind = kind;
+    }
+
+    public Long getChatRoomId() {
+        return this.chatRoomId;
+    }
+
+    public ChangeFeedEntry chatRoomId(Long chatRoomId) {
+        this.setChatRoomId(chatRoomId);
+        return this;
+    }
+
+    public void setChatRoomId(Long chatRoomId) {
+        this.chatRoomId = chatRoomId;
+    }
+
+    public Long getUserId() {
+        return this.userId;
+    }
+
+    public ChangeFeedEntry userId(Long userId) {
+        this.setUserId(userId);
+        return this;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getMessageId() {
+        return this.messageId;
+    }
+
+    public ChangeFeedEntry messageId(Long messageId) {
+        this.setMessageId(messageId);
+        return this;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChangeFeedEntry)) {
+            return false;
+        }
+        return getId() != null && getId().equals(((ChangeFeedEntry) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ChangeFeedEntry{" +
+            "id=" + getId() +
+            ", kind='" + getKind() + "'" +
+            ", chatRoomId=" + getChatRoomId() +
+            ", userId=" + getUserId() +
+            ", messageId=" + getMessageId() +
+            "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.daniinc.chatapp.domain;
 
+import com.daniinc.chatapp.config.Constants;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.io.Serializable;
@@ -12,17 +13,20 @@ import org.hibernate.annotations.CreationTimestamp;
 
 /**
  * A ChatRoom.
+ * <p>
+ * Not kept in the second level cache: its last message and sequence number are moved by bulk updates on every message,
+ * and each bulk update evicts the whole cache region of the entity.
  */
 @Entity
 @Table(name = "chat_room")
-@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class ChatRoom implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator", sequenceName = "sequence_generator", allocationSize = Constants.SEQUENCE_BLOCK_SIZE)
     @Column(name = "id")
     private Long id;
 
@@ -33,12 +37,37 @@ public class ChatRoom implements Serializable {
     @Column(name = "modified_at")
     private ZonedDateTime modifiedAt;
 
+    /**
+     * Newest message of the room, maintained by {@link com.daniinc.chatapp.repository.ChatRoomRepository} bulk updates.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "last_message_id", insertable = false, updatable = false)
+    @JsonIgnoreProperties(value = { "chatRoom" }, allowSetters = true)
+    private Message lastMessage;
+
+    @Column(name = "last_message_at", insertable = false, updatable = false)
+    private ZonedDateTime lastMessageAt;
+
+    /**
+     * Last sequence number allocated to a message of the room, maintained by
+     * {@link com.daniinc.chatapp.repository.ChatRoomRepository} bulk updates.
+     */
+    @Column(name = "last_seq", insertable = false, updatable = false)
+    private Long lastSeq;
+
+    /**
+     * Number of changes of the room other than new messages, maintained by
+     * {@link com.daniinc.chatapp.repository.ChatRoomRepository} bulk updates.
+     */
+    @Column(name = "version", insertable = false, updatable = false)
+    private Long version;
+
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "chatRoom")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "user", "chatRoom" }, allowSetters = true)
     private Set<Message> messages = new HashSet<>();
 
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "chatRoom")
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "chatRoom")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "user", "chatRoom" }, allowSetters = true)
     private Set<Participant> participants = new HashSet<>();
@@ -84,6 +113,38 @@ public class ChatRoom implements Serializable {
         this.modifiedAt = modifiedAt;
     }
 
+    public Message getLastMessage() {
+        return this.lastMessage;
+    }
+
+    public void setLastMessage(Message lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public ZonedDateTime getLastMessageAt() {
+        return this.lastMessageAt;
+    }
+
+    public void setLastMessageAt(ZonedDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public Long getLastSeq() {
+        return this.lastSeq;
+    }
+
+    public void setLastSeq(Long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Set<Message> getMessages() {
         return this.messages;
     }
@@ -172,6 +233,7 @@ public class ChatRoom implements Serializable {
             "id=" + getId() +
             ", createdAt='" + getCreatedAt() + "'" +
             ", modifiedAt='" + getModifiedAt() + "'" +
+            ", lastMessageAt='" + getLastMessageAt() + "'" +
             "}";
     }
 }
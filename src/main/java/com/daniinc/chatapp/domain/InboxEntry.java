@@ -0,0 +1,199 @@
+package com.daniinc.chatapp.domain;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * An entry of the inbox of a user: one of the chat rooms the user takes part in, with its last activity.
+ * <p>
+ * This is a projection of {@link Participant} and shares its id. Entries are kept up to date by
+ * {@link com.daniinc.chatapp.service.InboxService}, so that the room list of a user is read with a single index range scan.
+ */
+@Entity
+@Table(name = "inbox_entry")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class InboxEntry implements Serializable, Persistable<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private Long userId;
+
+    @Column(name = "chat_room_id", nullable = false, updatable = false)
+    private Long chatRoomId;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_activity_at", nullable = false)
+    private ZonedDateTime lastActivityAt;
+
+    @Column(name = "last_message_preview")
+    private String lastMessagePreview;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
+    @Transient
+    private boolean isPersisted;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public InboxEntry id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return this.userId;
+    }
+
+    public InboxEntry userId(Long userId) {
+        this.setUserId(userId);
+        return this;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getChatRoomId() {
+        return this.chatRoomId;
+    }
+
+    public InboxEntry chatRoomId(Long chatRoomId) {
+        this.setChatRoomId(chatRoomId);
+        return this;
+    }
+
+    public void setChatRoomId(Long chatRoomId) {
+        this.chatRoomId = chatRoomId;
+    }
+
+    public Long getLastMessageId() {
+        return this.lastMessageId;
+    }
+
+    public InboxEntry lastMessageId(Long lastMessageId) {
+        this.setLastMessageId(lastMessageId);
+        return this;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public ZonedDateTime getLastActivityAt() {
+        return this.lastActivityAt;
+    }
+
+    public InboxEntry lastActivityAt(ZonedDateTime lastActivityAt) {
+        this.setLastActivityAt(lastActivityAt);
+        return this;
+    }
+
+    public void setLastActivityAt(ZonedDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public String getLastMessagePreview() {
+        return this.lastMessagePreview;
+    }
+
+    public InboxEntry lastMessagePreview(String lastMessagePreview) {
+        this.setLastMessagePreview(lastMessagePreview);
+        return this;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public int getUnreadCount() {
+        return this.unreadCount;
+    }
+
+    public InboxEntry unreadCount(int unreadCount) {
+        this.setUnreadCount(unreadCount);
+        return this;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Long getLastReadMessageId() {
+        return this.lastReadMessageId;
+    }
+
+    public InboxEntry lastReadMessageId(Long lastReadMessageId) {
+        this.setLastReadMessageId(lastReadMessageId);
+        return this;
+    }
+
+    public void setLastReadMessageId(Long lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    @PostLoad
+    @PostPersist
+    public void updateEntityState() {
+        this.setIsPersisted();
+    }
+
+    @Override
+    public boolean isNew() {
+        return !this.isPersisted;
+    }
+
+    public InboxEntry setIsPersisted() {
+        this.isPersisted = true;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InboxEntry)) {
+            return false;
+        }
+        return getId() != null && getId().equals(((InboxEntry) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "InboxEntry{" +
+            "id=" + getId() +
+            ", userId=" + getUserId() +
+            ", chatRoomId=" + getChatRoomId() +
+            ", lastMessageId=" + getLastMessageId() +
+            ", lastActivityAt='" + getLastActivityAt() + "'" +
+            ", unreadCount=" + getUnreadCount() +
+            ", lastReadMessageId=" + getLastReadMessageId() +
+            "}";
+    }
+}
@@ -21,7 +21,7 @@ public class Message implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     @Column(name = "id")
     private Long id;
 
@@ -35,7 +35,16 @@ public class Message implements Serializable {
     @Column(name = "media_url")
     private String mediaUrl;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    /**
+     * Whether {@link #mediaUrl} is set, kept in step by {@link #setMediaUrl(String)} for the media gallery index.
+     */
+    @Column(name = "has_media", nullable = false)
+    private boolean hasMedia;
+
+    @Column(name = "seq", updatable = false)
+    private Long seq;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -95,6 +104,24 @@ public class Message implements Serializable {
 
     public void setMediaUrl(String mediaUrl) {
         this.mediaUrl = mediaUrl;
+        this.hasMedia = mediaUrl != null && !mediaUrl.isEmpty();
+    }
+
+    public boolean isHasMedia() {
+        return this.hasMedia;
+    }
+
+    public Long getSeq() {
+        return this.seq;
+    }
+
+    public Message seq(Long seq) {
+        this.setSeq(seq);
+        return this;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
     }
 
     public User getUser() {
@@ -150,6 +177,7 @@ public class Message implements Serializable {
             ", text='" + getText() + "'" +
             ", createdAt='" + getCreatedAt() + "'" +
             ", mediaUrl='" + getMediaUrl() + "'" +
+            ", seq=" + getSeq() +
             "}";
     }
 }
@@ -0,0 +1,77 @@
+package com.daniinc.chatapp.domain;
+
+import java.lang.reflect.Member;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+/**
+ * Time-ordered id generator in the spirit of Snowflake, allocating ids without a database round trip.
+ * <p>
+ * An id packs, from the most significant bit: 41 bits of milliseconds since {@link #EPOCH}, {@value #NODE_BITS} bits
+ * of node id and {@value #SEQUENCE_BITS} bits of per-millisecond counter. The total stays within 53 bits so ids are
+ * exact as JavaScript numbers on the client. Ids sort in creation order, and nodes configured with distinct
+ * {@code application.id-generator.node-id} values never collide.
+ * <p>
+ * The timestamp and counter of the JVM are kept in a single {@link AtomicLong} and advanced with compare-and-set.
+ * When the counter overflows within a millisecond, or the clock moves backwards, the logical timestamp simply runs
+ * ahead of the wall clock until it catches up, so allocation never blocks and never repeats an id.
+ */
+public class SnowflakeIdGenerator implements IdentifierGenerator {
+
+    /**
+     * Hibernate setting holding the node id, see {@code DatabaseConfiguration}.
+     */
+    public static final String NODE_ID_SETTING = "chatapp.id_generator.node_id";
+
+    public static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    public static final int NODE_BITS = 5;
+
+    public static final int SEQUENCE_BITS = 7;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // logical timestamp << SEQUENCE_BITS | counter, shared by every generator of the JVM
+    private static final AtomicLong STATE = new AtomicLong();
+
+    private final long nodeId;
+
+    public SnowflakeIdGenerator(SnowflakeId config, Member idMember, CustomIdGeneratorCreationContext context) {
+        Object setting = context.getServiceRegistry().requireService(ConfigurationService.class).getSettings().get(NODE_ID_SETTING);
+        this.nodeId = setting == null ? 0 : Long.parseLong(setting.toString());
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Snowflake node id must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return nextId(nodeId);
+    }
+
+    /**
+     * Get the lowest id that can be allocated at a time, by any node. Every id allocated before that time is lower.
+     *
+     * @param epochMillis the time, in milliseconds since the Unix epoch.
+     * @return the id.
+     */
+    public static long lowestIdAt(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    public static long nextId(long nodeId) {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long previous = STATE.get();
+            long next = now > previous >>> SEQUENCE_BITS ? now << SEQUENCE_BITS : previous + 1;
+            if (STATE.compareAndSet(previous, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.daniinc.chatapp.domain.enumeration;
+
+/**
+ * The ChangeKind enumeration, what a {@link com.daniinc.chatapp.domain.ChangeFeedEntry} records.
+ */
+public enum ChangeKind {
+    MESSAGE_CREATED,
+    MESSAGE_UPDATED,
+    MESSAGE_DELETED,
+    MEMBER_JOINED,
+    MEMBER_LEFT,
+}
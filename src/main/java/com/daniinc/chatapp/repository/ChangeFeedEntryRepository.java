@@ -0,0 +1,32 @@
+package com.daniinc.chatapp.repository;
+
+import com.daniinc.chatapp.domain.ChangeFeedEntry;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the ChangeFeedEntry entity.
+ */
+@Repository
+public interface ChangeFeedEntryRepository extends JpaRepository<ChangeFeedEntry, Long> {
+    /**
+     * Get the changes of some rooms, and the membership changes of a user, between two ids.
+     */
+    @Query(
+        "select e from ChangeFeedEntry e where e.id > ?1 and e.id <= ?2 and (e.chatRoomId in ?3 or e.userId = ?4) order by e.id"
+    )
+    List<ChangeFeedEntry> findChanges(Long afterId, Long upToId, Collection<Long> roomIds, Long userId, Limit limit);
+
+    /**
+     * Get the message changes of all the rooms between two ids.
+     */
+    @Query("select e from ChangeFeedEntry e where e.id > ?1 and e.id <= ?2 and e.messageId is not null order by e.id")
+    List<ChangeFeedEntry> findMessageChanges(Long afterId, Long upToId, Limit limit);
+
+    @Modifying
+    @Query("delete from ChangeFeedEntry e where e.id < ?1")
+    int deleteByIdLessThan(Long id);
+}
@@ -1,6 +1,9 @@
 package com.daniinc.chatapp.repository;
 
 import com.daniinc.chatapp.domain.ChatRoom;
+import com.daniinc.chatapp.domain.Message;
+import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -16,15 +19,108 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     @Query(
-        "select cr from ChatRoom cr " +
+        value = "select cr from ChatRoom cr " +
         "join cr.participants p " +
+        "left join fetch cr.lastMessage lm " +
+        "left join fetch lm.user " +
         "where p.user.id = ?1 " +
-        "order by (select max(m.createdAt) from cr.messages m) desc"
+        "order by cr.lastMessageAt desc, cr.id desc",
+        countQuery = "select count(cr) from ChatRoom cr join cr.participants p where p.user.id = ?1"
     )
     Page<ChatRoom> findChatRoomsByUserId(Long userId, Pageable pageable);
 
+    /**
+     * Move the last message pointer of a room forward, never backward, so concurrent writers can update it in any order.
+     */
+    @Modifying
+    @Query(
+        "update ChatRoom cr set cr.lastMessage.id = ?2, cr.lastMessageAt = ?3 " +
+        "where cr.id = ?1 and (cr.lastMessage.id is null or cr.lastMessage.id < ?2)"
+    )
+    int advanceLastMessage(Long roomId, Long messageId, ZonedDateTime createdAt);
+
+    default void advanceLastMessage(Message message) {
+        ZonedDateTime createdAt = message.getCreatedAt() != null ? message.getCreatedAt() : ZonedDateTime.now();
+        advanceLastMessage(message.getChatRoom().getId(), message.getId(), createdAt);
+    }
+
+    /**
+     * Point a room to the given message, or to none, whatever it pointed to before. Used when the newest message is deleted.
+     */
+    @Modifying
+    @Query("update ChatRoom cr set cr.lastMessage.id = ?2, cr.lastMessageAt = ?3 where cr.id = ?1")
+    int setLastMessage(Long roomId, Long messageId, ZonedDateTime createdAt);
+
+    /**
+     * Move the last sequence number of a room forward. The row stays locked until the transaction ends, so the allocated
+     * numbers are taken back on rollback and concurrent writers of the room wait for the commit.
+     */
+    @Modifying
+    @Query("update ChatRoom cr set cr.lastSeq = cr.lastSeq + ?2 where cr.id = ?1")
+    int incrementLastSeq(Long roomId, long count);
+
+    @Query("select cr.lastSeq from ChatRoom cr where cr.id = ?1")
+    Optional<Long> findLastSeqById(Long roomId);
+
+    /**
+     * Count a change of a room other than new messages. The row stays locked until the transaction ends, so the versions
+     * of a room move forward in commit order.
+     */
+    @Modifying
+    @Query("update ChatRoom cr set cr.version = cr.version + 1 where cr.id = ?1")
+    int incrementVersion(Long roomId);
+
+    /**
+     * Get the versions of a room, see {@link RoomVersion}.
+     */
+    @Query(
+        "select cr.lastSeq as lastSeq, cr.version as version, " +
+        "(select max(u.lastModifiedDate) from Participant p join p.user u where p.chatRoom = cr) as profilesModifiedAt " +
+        "from ChatRoom cr where cr.id = ?1"
+    )
+    Optional<RoomVersion> findVersionById(Long roomId);
+
+    /**
+     * Get the versions of the rooms of a user, see {@link RoomListVersion}.
+     */
+    @Query(
+        "select count(cr) as rooms, coalesce(sum(cr.lastSeq + cr.version), 0) as versions, " +
+        "(select max(e.id) from ChangeFeedEntry e where e.userId = ?1) as membershipChangeId, " +
+        "(select max(u.lastModifiedDate) from Participant o join o.user u " +
+        "where o.chatRoom.id in (select m.chatRoom.id from Participant m where m.user.id = ?1)) as profilesModifiedAt " +
+        "from ChatRoom cr join cr.participants p where p.user.id = ?1"
+    )
+    RoomListVersion findRoomListVersionByUserId(Long userId);
+
     @Query(
         "SELECT c FROM ChatRoom c WHERE (SELECT COUNT(p) FROM c.participants p WHERE p.user.id IN ?1) = ?2 AND SIZE(c.participants) = ?2"
     )
     Optional<ChatRoom> findRoomsByUserIds(@Param("userIds") List<Long> userIds, @Param("userCount") Integer userCount);
+
+    /**
+     * Persisted state of a room its messages depend on: the last sequence number moves with every new message, the version
+     * with every other change, and the newest modification date of the participants with their profiles.
+     */
+    interface RoomVersion {
+        Long getLastSeq();
+
+        Long getVersion();
+
+        Instant getProfilesModifiedAt();
+    }
+
+    /**
+     * Persisted state of the rooms of a user the room list depends on. The versions of the rooms only grow, the newest
+     * membership change of the user moves when they join or leave a room, and the newest modification date of the
+     * participants with their profiles.
+     */
+    interface RoomListVersion {
+        Long getRooms();
+
+        Long getVersions();
+
+        Long getMembershipChangeId();
+
+        Instant getProfilesModifiedAt();
+    }
 }
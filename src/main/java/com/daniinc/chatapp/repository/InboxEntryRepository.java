@@ -0,0 +1,66 @@
+package com.daniinc.chatapp.repository;
+
+import com.daniinc.chatapp.domain.InboxEntry;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the InboxEntry entity.
+ */
+@Repository
+public interface InboxEntryRepository extends JpaRepository<InboxEntry, Long> {
+    @Query("select e from InboxEntry e where e.userId = ?1 order by e.lastActivityAt desc, e.chatRoomId desc")
+    List<InboxEntry> findNewestByUserId(Long userId, Limit limit);
+
+    @Query(
+        "select e from InboxEntry e where e.userId = ?1 " +
+        "and (e.lastActivityAt < ?2 or (e.lastActivityAt = ?2 and e.chatRoomId < ?3)) " +
+        "order by e.lastActivityAt desc, e.chatRoomId desc"
+    )
+    List<InboxEntry> findByUserIdBefore(Long userId, ZonedDateTime beforeActivityAt, Long beforeRoomId, Limit limit);
+
+    List<InboxEntry> findAllByUserId(Long userId);
+
+    Optional<InboxEntry> findOneByUserIdAndChatRoomId(Long userId, Long chatRoomId);
+
+    /**
+     * Move the last message of all the entries of a room forward, never backward.
+     */
+    @Modifying
+    @Query(
+        "update InboxEntry e set e.lastMessageId = ?2, e.lastActivityAt = ?3, e.lastMessagePreview = ?4 " +
+        "where e.chatRoomId = ?1 and (e.lastMessageId is null or e.lastMessageId < ?2)"
+    )
+    int advanceLastMessage(Long chatRoomId, Long messageId, ZonedDateTime createdAt, String preview);
+
+    /**
+     * Point all the entries of a room to the given message, or to none, keeping their last activity. Used when the newest
+     * message is deleted.
+     */
+    @Modifying
+    @Query("update InboxEntry e set e.lastMessageId = ?2, e.lastMessagePreview = ?3 where e.chatRoomId = ?1")
+    int setLastMessage(Long chatRoomId, Long messageId, String preview);
+
+    @Modifying
+    @Query("update InboxEntry e set e.lastMessagePreview = ?3 where e.chatRoomId = ?1 and e.lastMessageId = ?2")
+    int updatePreview(Long chatRoomId, Long messageId, String preview);
+
+    /**
+     * Move the read marker of an entry forward, never backward, and set its unread count. No other column is written, so
+     * the last message and the counts added meanwhile by other transactions are kept.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(
+        "update InboxEntry e set e.lastReadMessageId = ?2, e.unreadCount = ?3 " +
+        "where e.id = ?1 and (e.lastReadMessageId is null or e.lastReadMessageId < ?2)"
+    )
+    int markRead(Long id, Long lastReadMessageId, int unreadCount);
+
+    @Modifying
+    @Query("delete from InboxEntry e where e.chatRoomId = ?1")
+    int deleteByChatRoomId(Long chatRoomId);
+}
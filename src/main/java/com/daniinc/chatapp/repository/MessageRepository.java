@@ -1,8 +1,12 @@
 package com.daniinc.chatapp.repository;
 
 import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.service.dto.MediaItemDTO;
+import com.daniinc.chatapp.service.dto.MessageDTO;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
@@ -14,17 +18,75 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
+    /**
+     * Select clause projecting messages straight into {@link MessageDTO}s, with only the columns they need and no entity
+     * in the persistence context. Messages must be aliased {@code m}.
+     */
+    String MESSAGE_DTO =
+        "select new com.daniinc.chatapp.service.dto.MessageDTO(" +
+        "m.id, m.text, m.createdAt, m.mediaUrl, m.seq, m.chatRoom.id, u.id, u.login, u.firstName, u.lastName, u.imageUrl) " +
+        "from Message m left join m.user u ";
+
+    /**
+     * Text of a message and its room, as read by the search index.
+     */
+    interface MessageText {
+        Long getId();
+
+        Long getChatRoomId();
+
+        String getText();
+    }
+
     @Query("select message from Message message where message.user.login = ?#{authentication.name}")
     List<Message> findByUserIsCurrentUser();
 
+    Optional<Message> findFirstByChatRoomIdOrderByIdDesc(Long roomId);
+
+    @Query("select m from Message m left join fetch m.user where m.id in ?1")
+    List<Message> findAllWithUserByIdIn(Collection<Long> ids);
+
+    @Query("select count(m) from Message m where m.chatRoom.id = ?1 and m.id > ?2 and (m.user is null or m.user.id <> ?3)")
+    long countUnread(Long roomId, Long afterId, Long userId);
+
+    long countByChatRoomId(Long roomId);
+
     @Query(
-        "SELECT m FROM Message m WHERE m.chatRoom.id = ?1 AND m.createdAt = (SELECT MAX(m2.createdAt) FROM Message m2 WHERE m2.chatRoom.id = ?1)"
+        value = MESSAGE_DTO + "where m.chatRoom.id = ?1 order by m.id desc",
+        countQuery = "select count(m) from Message m where m.chatRoom.id = ?1"
     )
-    Optional<Message> findLastMessageByRoomId(Long roomId);
+    Page<MessageDTO> findByRoomId(Long roomId, Pageable pageable);
 
-    @Query("select m from Message m where m.chatRoom.id = ?1 order by m.createdAt desc")
-    Page<Message> findByRoomId(Long roomId, Pageable pageable);
+    @Query(MESSAGE_DTO + "where m.chatRoom.id = ?1 and m.id < ?2 order by m.id desc")
+    List<MessageDTO> findByRoomIdAndIdLessThan(Long roomId, Long beforeId, Limit limit);
 
-    @Query("select m from Message m where m.chatRoom.id = ?1 and m.mediaUrl is not null and m.mediaUrl <> ''")
-    List<Message> findByMediaUrls(Long roomId);
+    @Query(MESSAGE_DTO + "where m.chatRoom.id = ?1 and m.seq between ?2 and ?3 order by m.seq")
+    List<MessageDTO> findByRoomIdAndSeqBetween(Long roomId, Long fromSeq, Long toSeq, Limit limit);
+
+    @Query(
+        "select m.id as id, m.chatRoom.id as chatRoomId, m.text as text from Message m " +
+        "where m.id > ?1 and m.chatRoom is not null and m.text is not null order by m.id"
+    )
+    List<MessageText> findTextsByIdGreaterThan(Long afterId, Limit limit);
+
+    @Query(
+        "select m.id as id, m.chatRoom.id as chatRoomId, m.text as text from Message m " +
+        "where m.id in ?1 and m.chatRoom is not null and m.text is not null"
+    )
+    List<MessageText> findTextsByIdIn(Collection<Long> ids);
+
+    @Query(MESSAGE_DTO + "where m.id in ?1 order by m.id desc")
+    List<MessageDTO> findAllByIdIn(Collection<Long> ids);
+
+    @Query("select m.mediaUrl from Message m where m.chatRoom.id = ?1 and m.hasMedia = true order by m.id desc")
+    List<String> findMediaUrlsByRoomId(Long roomId);
+
+    /**
+     * Get a page of the media gallery of a room, newest first, walking the (chat_room_id, has_media, id) index.
+     */
+    @Query(
+        "select new com.daniinc.chatapp.service.dto.MediaItemDTO(m.id, m.mediaUrl, m.createdAt, m.user.id) from Message m " +
+        "where m.chatRoom.id = ?1 and m.hasMedia = true and m.id < ?2 order by m.id desc"
+    )
+    List<MediaItemDTO> findMediaByRoomIdAndIdLessThan(Long roomId, Long beforeId, Limit limit);
 }
@@ -1,6 +1,7 @@
 package com.daniinc.chatapp.repository;
 
 import com.daniinc.chatapp.domain.Participant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.*;
@@ -17,4 +18,13 @@ public interface ParticipantRepository extends JpaRepository<Participant, Long>
 
     @Query("select p from Participant p where p.chatRoom.id = ?1 and p.user.id = ?2")
     Optional<Participant> findByChatRoomIdAndUserId(Long chatRoomId, Long userId);
+
+    @Query("select p from Participant p join fetch p.user where p.chatRoom.id in ?1")
+    List<Participant> findAllWithUserByChatRoomIdIn(Collection<Long> chatRoomIds);
+
+    @Query("select p.user.id from Participant p where p.chatRoom.id = ?1")
+    List<Long> findUserIdsByChatRoomId(Long chatRoomId);
+
+    @Query("select p.chatRoom.id from Participant p where p.user.id = ?1")
+    List<Long> findChatRoomIdsByUserId(Long userId);
 }
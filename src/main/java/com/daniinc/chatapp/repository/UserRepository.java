@@ -35,6 +35,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Page<User> findAllByIdNotNullAndActivatedIsTrue(Pageable pageable);
 
-    @Query("select u from User u where upper(u.firstName) like concat('%',?1,'%') or upper(u.lastName) like upper(concat('%',?1,'%')) ")
-    Page<User> findUsersBySearch(String search, Pageable pageable);
+    List<User> findAllByLastModifiedDateGreaterThanEqual(Instant dateTime);
+
+    @Query("select u.id from User u where u.activated = true")
+    List<Long> findActivatedIds();
 }
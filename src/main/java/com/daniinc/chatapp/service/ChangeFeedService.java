@@ -0,0 +1,223 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.domain.ChangeFeedEntry;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.domain.Participant;
+import com.daniinc.chatapp.domain.SnowflakeIdGenerator;
+import com.daniinc.chatapp.domain.User;
+import com.daniinc.chatapp.domain.enumeration.ChangeKind;
+import com.daniinc.chatapp.repository.ChangeFeedEntryRepository;
+import com.daniinc.chatapp.repository.ChatRoomRepository;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.service.dto.SyncDTO;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service recording the changes of the rooms in the change feed, see {@link ChangeFeedEntry}, and serving the delta sync of
+ * reconnecting clients from it.
+ * <p>
+ * The write paths of messages and participants record their changes in their own transaction. A sync reads the entries
+ * after the cursor of the client with one indexed query, then loads the messages and rooms they name in batches, so a
+ * reconnect costs a fixed number of queries whatever the number of rooms of the user. Every change other than new messages,
+ * which move the last sequence number of their room, also bumps the {@link VersionCounters} of its room.
+ */
+@Service
+@Transactional
+public class ChangeFeedService {
+
+    private final Logger log = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    private final ChangeFeedEntryRepository changeFeedEntryRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final ChatRoomRepository chatRoomRepository;
+
+    private final ChatRoomDtoAssembler chatRoomDtoAssembler;
+
+    private final RoomMembershipIndex roomMembershipIndex;
+
+    private final UserService userService;
+
+    private final VersionCounters versionCounters;
+
+    private final ApplicationProperties.Sync properties;
+
+    public ChangeFeedService(
+        ChangeFeedEntryRepository changeFeedEntryRepository,
+        MessageRepository messageRepository,
+        ChatRoomRepository chatRoomRepository,
+        ChatRoomDtoAssembler chatRoomDtoAssembler,
+        RoomMembershipIndex roomMembershipIndex,
+        UserService userService,
+        VersionCounters versionCounters,
+        ApplicationProperties applicationProperties
+    ) {
+        this.changeFeedEntryRepository = changeFeedEntryRepository;
+        this.messageRepository = messageRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.chatRoomDtoAssembler = chatRoomDtoAssembler;
+        this.roomMembershipIndex = roomMembershipIndex;
+        this.userService = userService;
+        this.versionCounters = versionCounters;
+        this.properties = applicationProperties.getSync();
+    }
+
+    public void messagesAdded(List<Message> messages) {
+        List<ChangeFeedEntry> entries = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.getChatRoom() != null) {
+                entries.add(entry(ChangeKind.MESSAGE_CREATED, message.getChatRoom().getId()).messageId(message.getId()));
+            }
+        }
+        changeFeedEntryRepository.saveAll(entries);
+    }
+
+    public void messageUpdated(Message message) {
+        if (message.getChatRoom() != null) {
+            changeFeedEntryRepository.save(entry(ChangeKind.MESSAGE_UPDATED, message.getChatRoom().getId()).messageId(message.getId()));
+            versionCounters.roomChanged(message.getChatRoom().getId());
+        }
+    }
+
+    public void messageDeleted(Long roomId, Long messageId) {
+        changeFeedEntryRepository.save(entry(ChangeKind.MESSAGE_DELETED, roomId).messageId(messageId));
+        versionCounters.roomChanged(roomId);
+    }
+
+    public void membersJoined(Collection<Participant> participants) {
+        List<ChangeFeedEntry> entries = new ArrayList<>(participants.size());
+        for (Participant participant : participants) {
+            if (participant.getChatRoom() != null && participant.getUser() != null) {
+                entries.add(entry(ChangeKind.MEMBER_JOINED, participant.getChatRoom().getId()).userId(participant.getUser().getId()));
+            }
+        }
+        changeFeedEntryRepository.saveAll(entries);
+        membershipChanged(entries);
+    }
+
+    public void membersLeft(Long roomId, Collection<Long> userIds) {
+        List<ChangeFeedEntry> entries = userIds.stream().map(userId -> entry(ChangeKind.MEMBER_LEFT, roomId).userId(userId)).toList();
+        changeFeedEntryRepository.saveAll(entries);
+        membershipChanged(entries);
+    }
+
+    private void membershipChanged(List<ChangeFeedEntry> entries) {
+        versionCounters.roomsChanged(entries.stream().map(ChangeFeedEntry::getChatRoomId).toList());
+    }
+
+    /**
+     * Get the changes of the rooms of the current user since a cursor.
+     *
+     * @param cursor the cursor returned by the previous sync, or {@code null} for the first one.
+     * @param limit the maximum number of changes to read, the rest is left for the next sync.
+     * @return the changes, with the cursor of the next sync. When the cursor is absent or older than the retention of the
+     * feed, the result only holds a new cursor and asks the client to reload its rooms.
+     */
+    @Transactional(readOnly = true)
+    public SyncDTO sync(Long cursor, int limit) {
+        User user = userService.getUserWithAuthorities().orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        long now = System.currentTimeMillis();
+        // ids allocated by transactions that may still be committing are left for the next sync
+        long upTo = SnowflakeIdGenerator.lowestIdAt(now - properties.getSettleMs());
+        SyncDTO result = new SyncDTO();
+        if (cursor == null || cursor < retentionStart(now)) {
+            result.setCursor(upTo);
+            result.setReset(true);
+            return result;
+        }
+        if (cursor >= upTo) {
+            result.setCursor(cursor);
+            return result;
+        }
+        long[] roomIds = roomMembershipIndex.rooms(user.getId());
+        List<ChangeFeedEntry> changes = changeFeedEntryRepository.findChanges(
+            cursor,
+            upTo,
+            Arrays.stream(roomIds).boxed().toList(),
+            user.getId(),
+            Limit.of(limit + 1)
+        );
+        if (changes.size() > limit) {
+            changes = changes.subList(0, limit);
+            result.setHasMore(true);
+            result.setCursor(changes.get(limit - 1).getId());
+        } else {
+            result.setCursor(upTo);
+        }
+
+        Set<Long> messageIds = new LinkedHashSet<>();
+        Set<Long> deletedMessageIds = new LinkedHashSet<>();
+        Set<Long> changedRoomIds = new LinkedHashSet<>();
+        Set<Long> leftRoomIds = new LinkedHashSet<>();
+        for (ChangeFeedEntry change : changes) {
+            changedRoomIds.add(change.getChatRoomId());
+            switch (change.getKind()) {
+                case MESSAGE_CREATED, MESSAGE_UPDATED -> messageIds.add(change.getMessageId());
+                case MESSAGE_DELETED -> {
+                    messageIds.remove(change.getMessageId());
+                    deletedMessageIds.add(change.getMessageId());
+                }
+                case MEMBER_LEFT -> {
+                    if (user.getId().equals(change.getUserId())) {
+                        leftRoomIds.add(change.getChatRoomId());
+                    }
+                }
+                case MEMBER_JOINED -> {}
+            }
+        }
+        // the current membership wins over the changes, the user may have left and joined again
+        changedRoomIds.removeIf(roomId -> Arrays.binarySearch(roomIds, roomId) < 0);
+        leftRoomIds.removeIf(roomId -> Arrays.binarySearch(roomIds, roomId) >= 0);
+
+        if (!messageIds.isEmpty()) {
+            result.setMessages(
+                messageRepository
+                    .findAllByIdIn(messageIds)
+                    .stream()
+                    .filter(message -> Arrays.binarySearch(roomIds, message.getChatRoom().getId()) >= 0)
+                    .toList()
+            );
+        }
+        if (!changedRoomIds.isEmpty()) {
+            result.setRooms(chatRoomDtoAssembler.toDtos(chatRoomRepository.findAllById(changedRoomIds)));
+        }
+        result.setDeletedMessageIds(new ArrayList<>(deletedMessageIds));
+        result.setLeftRoomIds(new ArrayList<>(leftRoomIds));
+        log.debug("Synced {} changes for user {}: {}", changes.size(), user.getId(), result);
+        return result;
+    }
+
+    /**
+     * Purge the entries older than {@code application.sync.retention-days}.
+     * <p>
+     * This is scheduled to get fired everyday, at 02:00 (am).
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void removeOldEntries() {
+        int deleted = changeFeedEntryRepository.deleteByIdLessThan(retentionStart(System.currentTimeMillis()));
+        log.debug("Deleted {} change feed entries", deleted);
+    }
+
+    private long retentionStart(long now) {
+        return SnowflakeIdGenerator.lowestIdAt(now - Duration.ofDays(properties.getRetentionDays()).toMillis());
+    }
+
+    private static ChangeFeedEntry entry(ChangeKind kind, Long roomId) {
+        return new ChangeFeedEntry().kind(kind).chatRoomId(roomId);
+    }
+}
@@ -0,0 +1,146 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.domain.ChatRoom;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.domain.Participant;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.repository.ParticipantRepository;
+import com.daniinc.chatapp.service.dto.ChatRoomDTO;
+import com.daniinc.chatapp.service.dto.UserDTO;
+import com.daniinc.chatapp.service.mapper.ChatRoomMapper;
+import com.daniinc.chatapp.service.mapper.MessageMapper;
+import com.daniinc.chatapp.service.mapper.UserMapper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Builds {@link ChatRoomDTO}s for a list of rooms with a fixed number of queries.
+ * <p>
+ * The ids of the rooms are collected first, then the participants of all the rooms are loaded with their users in one
+ * query, and the last messages not already fetched with the rooms in another one. The DTOs are put together in memory.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ChatRoomDtoAssembler {
+
+    private final Logger log = LoggerFactory.getLogger(ChatRoomDtoAssembler.class);
+
+    private final ParticipantRepository participantRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final ChatRoomMapper chatRoomMapper;
+
+    private final MessageMapper messageMapper;
+
+    private final UserMapper userMapper;
+
+    public ChatRoomDtoAssembler(
+        ParticipantRepository participantRepository,
+        MessageRepository messageRepository,
+        ChatRoomMapper chatRoomMapper,
+        MessageMapper messageMapper,
+        UserMapper userMapper
+    ) {
+        this.participantRepository = participantRepository;
+        this.messageRepository = messageRepository;
+        this.chatRoomMapper = chatRoomMapper;
+        this.messageMapper = messageMapper;
+        this.userMapper = userMapper;
+    }
+
+    public ChatRoomDTO toDto(ChatRoom chatRoom) {
+        return toDtos(List.of(chatRoom)).get(0);
+    }
+
+    public Page<ChatRoomDTO> toDtos(Page<ChatRoom> chatRooms) {
+        return new PageImpl<>(toDtos(chatRooms.getContent()), chatRooms.getPageable(), chatRooms.getTotalElements());
+    }
+
+    /**
+     * Map rooms to DTOs with their participants and last message.
+     *
+     * @param chatRooms the rooms.
+     * @return the DTOs, in the same order.
+     */
+    public List<ChatRoomDTO> toDtos(List<ChatRoom> chatRooms) {
+        if (chatRooms.isEmpty()) {
+            return List.of();
+        }
+        log.debug("Assembling {} chat rooms", chatRooms.size());
+        Map<Long, Set<UserDTO>> participants = loadParticipants(chatRooms);
+        Map<Long, Message> lastMessages = loadLastMessages(chatRooms);
+
+        List<ChatRoomDTO> result = new ArrayList<>(chatRooms.size());
+        for (ChatRoom chatRoom : chatRooms) {
+            ChatRoomDTO chatRoomDTO = chatRoomMapper.toDto(chatRoom);
+            chatRoomDTO.setParticipants(participants.getOrDefault(chatRoom.getId(), new HashSet<>()));
+            if (chatRoom.getLastMessage() != null) {
+                Message lastMessage = lastMessages.getOrDefault(chatRoom.getLastMessage().getId(), chatRoom.getLastMessage());
+                chatRoomDTO.setLastMessage(messageMapper.toDto(lastMessage));
+            }
+            result.add(chatRoomDTO);
+        }
+        return result;
+    }
+
+    /**
+     * Participants of rooms that already hold them, like a room just created, are taken as they are, the others are
+     * loaded together.
+     */
+    private Map<Long, Set<UserDTO>> loadParticipants(List<ChatRoom> chatRooms) {
+        Map<Long, Set<UserDTO>> result = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (ChatRoom chatRoom : chatRooms) {
+            if (chatRoom.getId() == null) {
+                continue;
+            }
+            if (Hibernate.isInitialized(chatRoom.getParticipants())) {
+                result.put(chatRoom.getId(), toUserDTOs(chatRoom.getParticipants()));
+            } else {
+                toLoad.add(chatRoom.getId());
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            for (Participant participant : participantRepository.findAllWithUserByChatRoomIdIn(toLoad)) {
+                result.computeIfAbsent(participant.getChatRoom().getId(), id -> new HashSet<>()).add(userMapper.userToUserDTO(participant.getUser()));
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, Message> loadLastMessages(List<ChatRoom> chatRooms) {
+        List<Long> toLoad = chatRooms
+            .stream()
+            .map(ChatRoom::getLastMessage)
+            .filter(message -> message != null && !Hibernate.isInitialized(message))
+            .map(Message::getId)
+            .toList();
+        if (toLoad.isEmpty()) {
+            return Map.of();
+        }
+        return messageRepository.findAllWithUserByIdIn(toLoad).stream().collect(Collectors.toMap(Message::getId, Function.identity()));
+    }
+
+    private Set<UserDTO> toUserDTOs(Collection<Participant> participants) {
+        return participants
+            .stream()
+            .filter(participant -> participant.getUser() != null)
+            .map(participant -> userMapper.userToUserDTO(participant.getUser()))
+            .collect(Collectors.toSet());
+    }
+}
@@ -1,19 +1,15 @@
 package com.daniinc.chatapp.service;
 
 import com.daniinc.chatapp.domain.ChatRoom;
-import com.daniinc.chatapp.domain.Message;
 import com.daniinc.chatapp.domain.Participant;
 import com.daniinc.chatapp.domain.User;
 import com.daniinc.chatapp.repository.ChatRoomRepository;
-import com.daniinc.chatapp.repository.MessageRepository;
 import com.daniinc.chatapp.repository.ParticipantRepository;
 import com.daniinc.chatapp.repository.UserRepository;
 import com.daniinc.chatapp.service.dto.AdminUserDTO;
 import com.daniinc.chatapp.service.dto.ChatRoomDTO;
-import com.daniinc.chatapp.service.dto.MessageDTO;
 import com.daniinc.chatapp.service.dto.UserDTO;
 import com.daniinc.chatapp.service.mapper.ChatRoomMapper;
-import com.daniinc.chatapp.service.mapper.MessageMapper;
 import com.daniinc.chatapp.service.mapper.UserMapper;
 import java.util.HashSet;
 import java.util.List;
@@ -41,31 +37,46 @@ public class ChatRoomService {
     private final ChatRoomRepository chatRoomRepository;
 
     private final ChatRoomMapper chatRoomMapper;
+    private final ChatRoomDtoAssembler chatRoomDtoAssembler;
     private final UserService userService;
-    private final MessageRepository messageRepository;
-    private final MessageMapper messageMapper;
     private final ParticipantRepository participantRepository;
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final RoomMembershipIndex roomMembershipIndex;
+    private final RecentMessageCache recentMessageCache;
+    private final InboxService inboxService;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ChangeFeedService changeFeedService;
+    private final VersionCounters versionCounters;
 
     public ChatRoomService(
         ChatRoomRepository chatRoomRepository,
         ChatRoomMapper chatRoomMapper,
+        ChatRoomDtoAssembler chatRoomDtoAssembler,
         UserService userService,
-        MessageRepository messageRepository,
-        MessageMapper messageMapper,
         ParticipantRepository participantRepository,
         UserRepository userRepository,
-        UserMapper userMapper
+        UserMapper userMapper,
+        RoomMembershipIndex roomMembershipIndex,
+        RecentMessageCache recentMessageCache,
+        InboxService inboxService,
+        MessageSearchIndex messageSearchIndex,
+        ChangeFeedService changeFeedService,
+        VersionCounters versionCounters
     ) {
         this.chatRoomRepository = chatRoomRepository;
         this.chatRoomMapper = chatRoomMapper;
+        this.chatRoomDtoAssembler = chatRoomDtoAssembler;
         this.userService = userService;
-        this.messageRepository = messageRepository;
-        this.messageMapper = messageMapper;
         this.participantRepository = participantRepository;
         this.userRepository = userRepository;
         this.userMapper = userMapper;
+        this.roomMembershipIndex = roomMembershipIndex;
+        this.recentMessageCache = recentMessageCache;
+        this.inboxService = inboxService;
+        this.messageSearchIndex = messageSearchIndex;
+        this.changeFeedService = changeFeedService;
+        this.versionCounters = versionCounters;
     }
 
     /**
@@ -77,8 +88,8 @@ public class ChatRoomService {
     public ChatRoomDTO save(ChatRoomDTO chatRoomDTO) {
         log.debug("Request to save ChatRoom : {}", chatRoomDTO);
         ChatRoom chatRoom = chatRoomMapper.toEntity(chatRoomDTO);
-        chatRoom = chatRoomRepository.save(chatRoom);
-        return chatRoomMapper.toDto(chatRoom);
+        chatRoom = chatRoomRepository.saveAndFlush(chatRoom);
+        return chatRoomDtoAssembler.toDto(chatRoom);
     }
 
     /**
@@ -91,7 +102,8 @@ public class ChatRoomService {
         log.debug("Request to update ChatRoom : {}", chatRoomDTO);
         ChatRoom chatRoom = chatRoomMapper.toEntity(chatRoomDTO);
         chatRoom = chatRoomRepository.save(chatRoom);
-        return chatRoomMapper.toDto(chatRoom);
+        versionCounters.roomChanged(chatRoom.getId());
+        return chatRoomDtoAssembler.toDto(chatRoom);
     }
 
     /**
@@ -107,11 +119,12 @@ public class ChatRoomService {
             .findById(chatRoomDTO.getId())
             .map(existingChatRoom -> {
                 chatRoomMapper.partialUpdate(existingChatRoom, chatRoomDTO);
+                versionCounters.roomChanged(existingChatRoom.getId());
 
                 return existingChatRoom;
             })
             .map(chatRoomRepository::save)
-            .map(chatRoomMapper::toDto);
+            .map(chatRoomDtoAssembler::toDto);
     }
 
     /**
@@ -127,7 +140,18 @@ public class ChatRoomService {
 
         User foundUser = user.orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        return chatRoomRepository.findChatRoomsByUserId(foundUser.getId(), pageable).map(chatRoomMapper::toDto);
+        return chatRoomDtoAssembler.toDtos(chatRoomRepository.findChatRoomsByUserId(foundUser.getId(), pageable));
+    }
+
+    /**
+     * Get the ETag of the room list of the current user, from the {@link VersionCounters}, without loading the rooms.
+     *
+     * @return the weak ETag.
+     */
+    @Transactional(readOnly = true)
+    public String getRoomListETag() {
+        User user = userService.getUserWithAuthorities().orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return versionCounters.roomListETag(user.getId());
     }
 
     /**
@@ -140,7 +164,7 @@ public class ChatRoomService {
     public Optional<ChatRoomDTO> findOne(Long id) {
         log.debug("Request to get ChatRoom : {}", id);
         Optional<AdminUserDTO> loggedInUser = userService.getUserWithAuthorities().map(userMapper::userToAdminUserDTO);
-        Optional<ChatRoomDTO> resultRoom = chatRoomRepository.findById(id).map(chatRoomMapper::toDto);
+        Optional<ChatRoomDTO> resultRoom = chatRoomRepository.findById(id).map(chatRoomDtoAssembler::toDto);
 
         AdminUserDTO userDto = loggedInUser.orElseThrow(() -> new RuntimeException("User not found!"));
         ChatRoomDTO chatRoomDto = resultRoom.orElseThrow(() -> new RuntimeException("Room not found!"));
@@ -162,18 +186,15 @@ public class ChatRoomService {
      */
     public void delete(Long id) {
         log.debug("Request to delete ChatRoom : {}", id);
+        List<Long> userIds = participantRepository.findUserIdsByChatRoomId(id);
+        roomMembershipIndex.evict(id, userIds);
+        recentMessageCache.evict(id);
+        inboxService.removeRoom(id);
+        messageSearchIndex.roomDeleted(id);
+        changeFeedService.membersLeft(id, userIds);
         chatRoomRepository.deleteById(id);
     }
 
-    public MessageDTO saveMessage(Long roomId, MessageDTO messageDTO) {
-        // Save message to the database
-        Message message = messageMapper.toEntity(messageDTO);
-        ChatRoom chatRoom = chatRoomRepository.findById(roomId).orElse(null);
-        message.setChatRoom(chatRoom);
-        Message savedMessage = messageRepository.save(message);
-        return messageMapper.toDto(savedMessage);
-    }
-
     public ResponseEntity<?> create(List<Long> userIds) {
         Optional<User> ownUser = userService.getUserWithAuthorities();
 
@@ -187,25 +208,28 @@ public class ChatRoomService {
         Optional<ChatRoom> existsRoom = chatRoomRepository.findRoomsByUserIds(userIds, userIds.size());
 
         return existsRoom
-            .map(room -> new ResponseEntity<>(chatRoomMapper.toDto(room), HttpStatus.FOUND))
+            .map(room -> new ResponseEntity<>(chatRoomDtoAssembler.toDto(room), HttpStatus.FOUND))
             .orElseGet(() -> {
                 ChatRoom chatRoom = new ChatRoom();
                 ChatRoom savedChatRoom = chatRoomRepository.save(chatRoom);
 
                 Set<Participant> participantList = new HashSet<>();
-                userIds.forEach(id -> {
-                    Optional<User> userOptional = userRepository.findById(id);
-                    userOptional.ifPresent(foundUser -> {
+                userRepository
+                    .findAllById(userIds)
+                    .forEach(foundUser -> {
                         Participant participant = new Participant();
                         participant.setUser(foundUser);
                         participant.setChatRoom(savedChatRoom);
                         participantList.add(participant);
-                        participantRepository.save(participant);
                     });
-                });
+                // pooled ids let the room and participant inserts go out as one JDBC batch on this flush
+                participantRepository.saveAllAndFlush(participantList);
+                inboxService.addEntries(participantList);
+                changeFeedService.membersJoined(participantList);
+                roomMembershipIndex.evict(savedChatRoom.getId(), userIds);
 
                 savedChatRoom.setParticipants(participantList);
-                ChatRoomDTO result = chatRoomMapper.toDto(savedChatRoom);
+                ChatRoomDTO result = chatRoomDtoAssembler.toDto(savedChatRoom);
                 return ResponseEntity.status(HttpStatus.CREATED).body(result);
             });
     }
@@ -0,0 +1,238 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.domain.InboxEntry;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.domain.Participant;
+import com.daniinc.chatapp.domain.User;
+import com.daniinc.chatapp.repository.InboxEntryRepository;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.service.dto.InboxEntryDTO;
+import com.daniinc.chatapp.service.mapper.InboxEntryMapper;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service maintaining the inbox of the users, see {@link InboxEntry}.
+ * <p>
+ * There is one entry per {@link Participant}, added and removed with it. The write paths of messages call
+ * {@link #messagesAdded(Long, List)} in their transaction, which updates all the entries of the room with a single bulk
+ * statement, whatever the number of participants. Unread counts are written behind by {@link UnreadCounters}.
+ */
+@Service
+@Transactional
+public class InboxService {
+
+    static final int PREVIEW_LENGTH = 255;
+
+    private final Logger log = LoggerFactory.getLogger(InboxService.class);
+
+    private final InboxEntryRepository inboxEntryRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final InboxEntryMapper inboxEntryMapper;
+
+    private final UserService userService;
+
+    private final UnreadCounters unreadCounters;
+
+    public InboxService(
+        InboxEntryRepository inboxEntryRepository,
+        MessageRepository messageRepository,
+        InboxEntryMapper inboxEntryMapper,
+        UserService userService,
+        UnreadCounters unreadCounters
+    ) {
+        this.inboxEntryRepository = inboxEntryRepository;
+        this.messageRepository = messageRepository;
+        this.inboxEntryMapper = inboxEntryMapper;
+        this.userService = userService;
+        this.unreadCounters = unreadCounters;
+    }
+
+    /**
+     * Get the inbox of the current user, most recently active rooms first.
+     *
+     * @param beforeActivityAt the last activity of the last entry already loaded, absent for the first page.
+     * @param beforeRoomId the chat room id of the last entry already loaded, absent for the first page.
+     * @param limit the maximum number of entries to return.
+     * @return the entries.
+     */
+    @Transactional(readOnly = true)
+    public List<InboxEntryDTO> findInbox(ZonedDateTime beforeActivityAt, Long beforeRoomId, int limit) {
+        Long userId = getCurrentUserId();
+        List<InboxEntry> entries = beforeActivityAt == null || beforeRoomId == null
+            ? inboxEntryRepository.findNewestByUserId(userId, Limit.of(limit))
+            : inboxEntryRepository.findByUserIdBefore(userId, beforeActivityAt, beforeRoomId, Limit.of(limit));
+        return entries.stream().map(this::toDto).toList();
+    }
+
+    /**
+     * Get the unread counts of all the rooms of the current user.
+     *
+     * @return the number of unread messages by chat room id.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> findUnreadCounts() {
+        Map<Long, Long> result = new HashMap<>();
+        for (InboxEntry entry : inboxEntryRepository.findAllByUserId(getCurrentUserId())) {
+            result.put(entry.getChatRoomId(), unreadCount(entry));
+        }
+        return result;
+    }
+
+    /**
+     * Mark the messages of a room read by the current user, see {@link #markRead(Long, Long, Long)}.
+     */
+    public Optional<InboxEntryDTO> markRead(Long roomId, Long messageId) {
+        return markRead(roomId, getCurrentUserId(), messageId);
+    }
+
+    /**
+     * Mark the messages of a room read by a user, up to a message. The read marker never moves backward.
+     *
+     * @param roomId the id of the chat room.
+     * @param userId the id of the user.
+     * @param messageId the id of the last message read, {@code null} for the last message of the room.
+     * @return the updated inbox entry, or empty if the user does not take part in the room.
+     */
+    public Optional<InboxEntryDTO> markRead(Long roomId, Long userId, Long messageId) {
+        log.debug("Request to mark room {} read by user {} up to {}", roomId, userId, messageId);
+        // the pending counts of the room must be in the row before it is reset
+        unreadCounters.flush(roomId);
+        return inboxEntryRepository
+            .findOneByUserIdAndChatRoomId(userId, roomId)
+            .map(entry -> {
+                Long lastMessageId = entry.getLastMessageId();
+                if (lastMessageId == null) {
+                    return entry;
+                }
+                long readUpTo = messageId != null ? Math.min(messageId, lastMessageId) : lastMessageId;
+                if (entry.getLastReadMessageId() != null && entry.getLastReadMessageId() >= readUpTo) {
+                    return entry;
+                }
+                int unreadCount = readUpTo == lastMessageId ? 0 : (int) messageRepository.countUnread(roomId, readUpTo, userId);
+                // a targeted update, so a concurrent call having moved the marker further wins
+                inboxEntryRepository.markRead(entry.getId(), readUpTo, unreadCount);
+                return inboxEntryRepository.findById(entry.getId()).orElse(entry);
+            })
+            .map(this::toDto);
+    }
+
+    /**
+     * Add the entries of new participants, pointing to the current last message of their room.
+     *
+     * @param participants the saved participants.
+     */
+    public void addEntries(Collection<Participant> participants) {
+        Map<Long, Optional<Message>> lastMessages = new HashMap<>();
+        List<InboxEntry> entries = new ArrayList<>(participants.size());
+        for (Participant participant : participants) {
+            if (participant.getChatRoom() == null || participant.getUser() == null) {
+                continue;
+            }
+            Long roomId = participant.getChatRoom().getId();
+            Optional<Message> last = lastMessages.computeIfAbsent(roomId, messageRepository::findFirstByChatRoomIdOrderByIdDesc);
+            entries.add(
+                new InboxEntry()
+                    .id(participant.getId())
+                    .userId(participant.getUser().getId())
+                    .chatRoomId(roomId)
+                    .lastMessageId(last.map(Message::getId).orElse(null))
+                    .lastActivityAt(last.map(Message::getCreatedAt).orElseGet(ZonedDateTime::now))
+                    .lastMessagePreview(last.map(InboxService::preview).orElse(null))
+            );
+        }
+        log.debug("Adding {} inbox entries", entries.size());
+        inboxEntryRepository.saveAll(entries);
+    }
+
+    /**
+     * Remove the entry of a participant. It is deleted right away, so that it can be added again in the same transaction.
+     *
+     * @param participantId the id of the participant.
+     */
+    public void removeEntry(Long participantId) {
+        inboxEntryRepository.deleteById(participantId);
+        inboxEntryRepository.flush();
+    }
+
+    public void removeRoom(Long roomId) {
+        inboxEntryRepository.deleteByChatRoomId(roomId);
+    }
+
+    /**
+     * Record new messages of a room: the entries of the room point to the newest one, and every participant but the sender
+     * has the messages counted as unread. Issues one statement, plus one per sender.
+     *
+     * @param roomId the id of the chat room.
+     * @param messages the persisted messages, in any order.
+     */
+    public void messagesAdded(Long roomId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Message newest = messages.stream().max(Comparator.comparing(Message::getId)).orElseThrow();
+        ZonedDateTime createdAt = newest.getCreatedAt() != null ? newest.getCreatedAt() : ZonedDateTime.now();
+        inboxEntryRepository.advanceLastMessage(roomId, newest.getId(), createdAt, preview(newest));
+        Map<Long, List<Long>> idsBySender = new HashMap<>();
+        for (Message message : messages) {
+            Long senderId = message.getUser() != null ? message.getUser().getId() : null;
+            idsBySender.computeIfAbsent(senderId, id -> new ArrayList<>()).add(message.getId());
+        }
+        idsBySender.forEach((senderId, ids) -> unreadCounters.add(roomId, senderId, ids.stream().mapToLong(Long::longValue).toArray()));
+    }
+
+    /**
+     * Refresh the preview of an edited message, if it is the last message of its room.
+     */
+    public void messageUpdated(Message message) {
+        if (message.getChatRoom() != null) {
+            inboxEntryRepository.updatePreview(message.getChatRoom().getId(), message.getId(), preview(message));
+        }
+    }
+
+    /**
+     * Point the entries of a room to its new last message, after the previous one was deleted.
+     *
+     * @param roomId the id of the chat room.
+     * @param last the new last message of the room, if any.
+     */
+    public void lastMessageChanged(Long roomId, Optional<Message> last) {
+        inboxEntryRepository.setLastMessage(roomId, last.map(Message::getId).orElse(null), last.map(InboxService::preview).orElse(null));
+    }
+
+    private InboxEntryDTO toDto(InboxEntry entry) {
+        InboxEntryDTO inboxEntryDTO = inboxEntryMapper.toDto(entry);
+        inboxEntryDTO.setUnreadCount((int) unreadCount(entry));
+        return inboxEntryDTO;
+    }
+
+    private long unreadCount(InboxEntry entry) {
+        return entry.getUnreadCount() + unreadCounters.pending(entry.getChatRoomId(), entry.getUserId(), entry.getLastReadMessageId());
+    }
+
+    private Long getCurrentUserId() {
+        return userService
+            .getUserWithAuthorities()
+            .map(User::getId)
+            .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    }
+
+    private static String preview(Message message) {
+        String text = message.getText();
+        return text != null && text.length() > PREVIEW_LENGTH ? text.substring(0, PREVIEW_LENGTH) : text;
+    }
+}
@@ -0,0 +1,270 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.repository.ChatRoomRepository;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.repository.UserRepository;
+import com.daniinc.chatapp.service.dto.ChatRoomDTO;
+import com.daniinc.chatapp.service.dto.MessageDTO;
+import com.daniinc.chatapp.service.mapper.MessageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Group-commit writer for chat messages sent over STOMP.
+ * <p>
+ * Messages are queued by the inbound threads and persisted by a single writer thread in batches of at most
+ * {@code application.message-writer.batch-size} messages, or whatever arrived within {@code application.message-writer.max-delay-ms}
+ * after the first one. A batch is written in one transaction, so a busy room pays one commit for many messages.
+ * Every caller gets its own result: if a batch fails, its messages are retried one by one so that a single bad message
+ * does not fail the others. The results are completed off the writer thread, on {@code application.message-writer.callback-threads}
+ * single-threaded executors the rooms are spread over, so the callbacks of a room run in the order of its messages while the
+ * writer moves on to the next batch.
+ */
+@Service
+public class MessageBatchWriter {
+
+    private final Logger log = LoggerFactory.getLogger(MessageBatchWriter.class);
+
+    private final MessageRepository messageRepository;
+
+    private final ChatRoomRepository chatRoomRepository;
+
+    private final UserRepository userRepository;
+
+    private final MessageMapper messageMapper;
+
+    private final MessageSequencer messageSequencer;
+
+    private final RecentMessageCache recentMessageCache;
+
+    private final InboxService inboxService;
+
+    private final MessageSearchIndex messageSearchIndex;
+
+    private final ChangeFeedService changeFeedService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<PendingMessage> queue;
+
+    private final int batchSize;
+
+    private final long maxDelayNanos;
+
+    private final ExecutorService[] callbackExecutors;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    public MessageBatchWriter(
+        MessageRepository messageRepository,
+        ChatRoomRepository chatRoomRepository,
+        UserRepository userRepository,
+        MessageMapper messageMapper,
+        MessageSequencer messageSequencer,
+        RecentMessageCache recentMessageCache,
+        InboxService inboxService,
+        MessageSearchIndex messageSearchIndex,
+        ChangeFeedService changeFeedService,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.messageRepository = messageRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.userRepository = userRepository;
+        this.messageMapper = messageMapper;
+        this.messageSequencer = messageSequencer;
+        this.recentMessageCache = recentMessageCache;
+        this.inboxService = inboxService;
+        this.messageSearchIndex = messageSearchIndex;
+        this.changeFeedService = changeFeedService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        ApplicationProperties.MessageWriter properties = applicationProperties.getMessageWriter();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxDelayMs());
+        CustomizableThreadFactory callbackThreadFactory = new CustomizableThreadFactory("chatapp-message-callback-");
+        callbackThreadFactory.setDaemon(true);
+        this.callbackExecutors = new ExecutorService[Math.max(1, properties.getCallbackThreads())];
+        for (int i = 0; i < callbackExecutors.length; i++) {
+            callbackExecutors[i] = Executors.newSingleThreadExecutor(callbackThreadFactory);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::run, "chatapp-message-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        for (ExecutorService callbackExecutor : callbackExecutors) {
+            callbackExecutor.shutdown();
+        }
+        for (ExecutorService callbackExecutor : callbackExecutors) {
+            callbackExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Queue a message for the next batch.
+     *
+     * @param roomId the id of the chat room the message is sent to.
+     * @param messageDTO the message to persist.
+     * @return a future completed with the persisted message once its batch is committed. It is completed on the callback
+     * executor of the room, in the order of the submissions to the room, so its callbacks should not block.
+     */
+    public CompletableFuture<MessageDTO> submit(Long roomId, MessageDTO messageDTO) {
+        PendingMessage pending = new PendingMessage(roomId, messageDTO, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            pending.result().completeExceptionally(new RejectedExecutionException("Message writer is not accepting messages"));
+        }
+        return pending.result();
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+            } catch (InterruptedException e) {
+                // stop() interrupts the writer; the loop keeps draining until the queue is empty
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingMessage> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        queue.drainTo(batch, batchSize - batch.size());
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        try {
+            List<MessageDTO> results = transactionTemplate.execute(status -> persist(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), results.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            log.warn("Failed to write a batch of {} messages, retrying them one by one: {}", batch.size(), e.getMessage());
+            for (PendingMessage pending : batch) {
+                try {
+                    complete(pending, transactionTemplate.execute(status -> persist(List.of(pending))).get(0));
+                } catch (RuntimeException ex) {
+                    fail(pending, ex);
+                }
+            }
+        }
+    }
+
+    private void complete(PendingMessage pending, MessageDTO result) {
+        recentMessageCache.append(pending.roomId(), result);
+        callbackExecutor(pending.roomId()).execute(() -> pending.result().complete(result));
+    }
+
+    private void fail(PendingMessage pending, Throwable error) {
+        callbackExecutor(pending.roomId()).execute(() -> pending.result().completeExceptionally(error));
+    }
+
+    private ExecutorService callbackExecutor(Long roomId) {
+        return callbackExecutors[(int) Math.floorMod(roomId, (long) callbackExecutors.length)];
+    }
+
+    /**
+     * Insert the messages of a batch. The room and the sender are set as references and the results are built from the
+     * submitted messages, so apart from the sequence allocation, the inserts and the room and inbox updates no statement is
+     * issued: callers must have checked that the room exists and the sender takes part in it.
+     */
+    private List<MessageDTO> persist(List<PendingMessage> batch) {
+        // one range of sequence numbers per room, allocated in room id order so concurrent writers lock the rooms alike
+        Map<Long, Long> nextSeqs = new TreeMap<>();
+        batch.forEach(pending -> nextSeqs.merge(pending.roomId(), 1L, Long::sum));
+        nextSeqs.replaceAll((roomId, count) -> messageSequencer.allocate(roomId, count.intValue()));
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            MessageDTO messageDTO = pending.messageDTO();
+            Message message = messageMapper.toEntity(messageDTO);
+            message.setChatRoom(chatRoomRepository.getReferenceById(pending.roomId()));
+            message.setUser(messageDTO.getUser() != null ? userRepository.getReferenceById(messageDTO.getUser().getId()) : null);
+            message.setSeq(nextSeqs.merge(pending.roomId(), 1L, Long::sum) - 1);
+            messages.add(message);
+        }
+        messageRepository.saveAllAndFlush(messages);
+        // the room pointer and the inbox entries are updated once per room of the batch
+        Map<Long, List<Message>> messagesByRoom = new HashMap<>();
+        for (Message message : messages) {
+            messagesByRoom.computeIfAbsent(message.getChatRoom().getId(), id -> new ArrayList<>()).add(message);
+        }
+        messagesByRoom.forEach((roomId, roomMessages) -> {
+            chatRoomRepository.advanceLastMessage(roomMessages.stream().max(Comparator.comparing(Message::getId)).orElseThrow());
+            inboxService.messagesAdded(roomId, roomMessages);
+        });
+        messageSearchIndex.messagesAdded(messages);
+        changeFeedService.messagesAdded(messages);
+
+        List<MessageDTO> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            MessageDTO result = messageMapper.toDtoWithoutAssociations(messages.get(i));
+            result.setUser(batch.get(i).messageDTO().getUser());
+            ChatRoomDTO chatRoomDTO = new ChatRoomDTO();
+            chatRoomDTO.setId(batch.get(i).roomId());
+            result.setChatRoom(chatRoomDTO);
+            results.add(result);
+        }
+        return results;
+    }
+
+    private record PendingMessage(Long roomId, MessageDTO messageDTO, CompletableFuture<MessageDTO> result) {}
+}
@@ -0,0 +1,95 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.service.dto.MessageDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service exporting the whole history of a room as NDJSON, one {@link MessageDTO} per line, oldest first.
+ * <p>
+ * Messages are read through a {@link StatelessSession}, so nothing is kept in a persistence context, with a forward-only
+ * cursor fetching {@code application.export.fetch-size} rows per round trip, and each one is written as soon as it is read.
+ * Memory use does not depend on the size of the room. On MySQL, the cursor needs {@code useCursorFetch=true} in the JDBC URL,
+ * otherwise the driver reads the whole result set at once.
+ */
+@Service
+public class MessageExportService {
+
+    private static final String EXPORT_QUERY = MessageRepository.MESSAGE_DTO + "where m.chatRoom.id = :roomId order by m.id";
+
+    private final Logger log = LoggerFactory.getLogger(MessageExportService.class);
+
+    private final SessionFactory sessionFactory;
+
+    private final ObjectWriter objectWriter;
+
+    private final int fetchSize;
+
+    public MessageExportService(
+        EntityManagerFactory entityManagerFactory,
+        ObjectMapper objectMapper,
+        ApplicationProperties applicationProperties
+    ) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.objectWriter = objectMapper
+            .writerFor(MessageDTO.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = Math.max(1, applicationProperties.getExport().getFetchSize());
+    }
+
+    /**
+     * Write all the messages of a room. The caller checks that the room may be exported, and owns the output stream.
+     *
+     * @param roomId the id of the chat room.
+     * @param out the stream to write to, it is flushed every {@code fetchSize} messages but not closed.
+     * @return the number of messages written.
+     * @throws IOException if the output stream fails, typically because the client went away.
+     */
+    public long export(Long roomId, OutputStream out) throws IOException {
+        long count = 0;
+        try (
+            StatelessSession session = sessionFactory.openStatelessSession();
+            JsonGenerator generator = objectWriter.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        ) {
+            // lines are separated by new lines, not by the default space between root values
+            generator.setRootValueSeparator(null);
+            Transaction transaction = session.beginTransaction();
+            try (
+                ScrollableResults<MessageDTO> messages = session
+                    .createSelectionQuery(EXPORT_QUERY, MessageDTO.class)
+                    .setParameter("roomId", roomId)
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY)
+            ) {
+                while (messages.next()) {
+                    objectWriter.writeValue(generator, messages.get());
+                    generator.writeRaw('\n');
+                    if (++count % fetchSize == 0) {
+                        generator.flush();
+                    }
+                }
+            } finally {
+                // read only, nothing to commit
+                transaction.rollback();
+            }
+        }
+        log.debug("Exported {} messages of room {}", count, roomId);
+        return count;
+    }
+}
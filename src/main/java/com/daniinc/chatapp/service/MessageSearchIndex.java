@@ -0,0 +1,429 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.domain.ChangeFeedEntry;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.domain.SnowflakeIdGenerator;
+import com.daniinc.chatapp.domain.enumeration.ChangeKind;
+import com.daniinc.chatapp.repository.ChangeFeedEntryRepository;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.service.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Embedded Lucene index of the message texts, stored under {@code application.search.directory}.
+ * <p>
+ * The write path only queues changes once its transaction commits. Every {@code application.search.refresh-interval-ms}
+ * the queue is applied to the index, committed and the searcher refreshed, so a message becomes searchable within that
+ * interval. Documents are sorted by message id, newest first, so a search stops after the first {@code limit} matching
+ * messages of the rooms of the user, whatever the size of the message table.
+ * <p>
+ * The change feed is the source of truth: every refresh also applies the message changes of the feed up to
+ * {@code application.sync.settle-ms} ago, whichever node wrote them, and keeps the id of the last one read with every
+ * commit. Changes committed late or by other nodes are thus indexed within the settle time, and on startup the index
+ * catches up from its cursor. When the index has no cursor, or one older than the retention of the feed, the whole
+ * message table is indexed again, as {@link #rebuild()} does, in batches of {@code application.search.rebuild-batch-size}.
+ */
+@Service
+public class MessageSearchIndex {
+
+    private static final String KEY = "key";
+
+    private static final String ID = "id";
+
+    private static final String ROOM = "room";
+
+    private static final String TEXT = "text";
+
+    private static final String FEED_CURSOR = "feedCursor";
+
+    private static final Sort NEWEST_FIRST = new Sort(new SortField(ID, SortField.Type.LONG, true));
+
+    /**
+     * Words of a search beyond this are ignored.
+     */
+    private static final int MAX_TERMS = 16;
+
+    private final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private final MessageRepository messageRepository;
+
+    private final ChangeFeedEntryRepository changeFeedEntryRepository;
+
+    private final ApplicationProperties.Search properties;
+
+    private final ApplicationProperties.Sync syncProperties;
+
+    private final Executor taskExecutor;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong feedCursor = new AtomicLong();
+
+    private final AtomicBoolean indexing = new AtomicBoolean();
+
+    /**
+     * Held while reading the change feed or indexing the message table, which both move the feed cursor.
+     */
+    private final Lock feedLock = new ReentrantLock();
+
+    private Directory directory;
+
+    private IndexWriter writer;
+
+    private SearcherManager searcherManager;
+
+    public MessageSearchIndex(
+        MessageRepository messageRepository,
+        ChangeFeedEntryRepository changeFeedEntryRepository,
+        ApplicationProperties applicationProperties,
+        @Qualifier("taskExecutor") Executor taskExecutor
+    ) {
+        this.messageRepository = messageRepository;
+        this.changeFeedEntryRepository = changeFeedEntryRepository;
+        this.properties = applicationProperties.getSearch();
+        this.syncProperties = applicationProperties.getSync();
+        this.taskExecutor = taskExecutor;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(Path.of(properties.getDirectory()));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setIndexSort(NEWEST_FIRST);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (FEED_CURSOR.equals(entry.getKey())) {
+                    feedCursor.set(Long.parseLong(entry.getValue()));
+                }
+            }
+        }
+        log.info("Opened message search index in {} with {} documents", properties.getDirectory(), writer.getDocStats().numDocs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        if (feedCursor.get() < retentionStart()) {
+            index(true);
+        }
+    }
+
+    /**
+     * Drop the index and index all the messages again, in the background.
+     *
+     * @return {@code false} if the index is already being rebuilt.
+     */
+    public boolean rebuild() {
+        return index(true);
+    }
+
+    /**
+     * Index new messages. Inside a transaction, they are indexed after commit.
+     */
+    public void messagesAdded(List<Message> messages) {
+        List<Change> added = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.getChatRoom() != null && message.getText() != null) {
+                added.add(Change.index(message.getId(), message.getChatRoom().getId(), message.getText()));
+            }
+        }
+        if (!added.isEmpty()) {
+            AfterCommit.run(() -> changes.addAll(added));
+        }
+    }
+
+    public void messageUpdated(Message message) {
+        if (message.getChatRoom() != null && message.getText() != null) {
+            Change change = Change.index(message.getId(), message.getChatRoom().getId(), message.getText());
+            AfterCommit.run(() -> changes.add(change));
+        } else {
+            messageDeleted(message.getId());
+        }
+    }
+
+    public void messageDeleted(Long messageId) {
+        AfterCommit.run(() -> changes.add(new Change(Change.Kind.DELETE_MESSAGE, messageId, 0, null)));
+    }
+
+    public void roomDeleted(Long roomId) {
+        AfterCommit.run(() -> changes.add(new Change(Change.Kind.DELETE_ROOM, 0, roomId, null)));
+    }
+
+    /**
+     * Find the newest messages of some rooms containing all the words of a text, the last one as a prefix.
+     *
+     * @param text the text to search.
+     * @param roomIds the ids of the rooms to search in.
+     * @param beforeId only find messages older than this one, may be {@code null}.
+     * @param limit the maximum number of messages to find.
+     * @return the ids of the messages found, newest first.
+     */
+    public List<Long> search(String text, long[] roomIds, Long beforeId, int limit) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty() || roomIds.length == 0) {
+            return List.of();
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            Term term = new Term(TEXT, terms.get(i));
+            // the last word may still be being typed
+            query.add(i == terms.size() - 1 ? new PrefixQuery(term) : new TermQuery(term), BooleanClause.Occur.MUST);
+        }
+        query.add(LongPoint.newSetQuery(ROOM, roomIds), BooleanClause.Occur.FILTER);
+        if (beforeId != null) {
+            query.add(LongPoint.newRangeQuery(ID, Long.MIN_VALUE, beforeId - 1), BooleanClause.Occur.FILTER);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopFieldDocs top = searcher.search(query.build(), limit, NEWEST_FIRST);
+                List<Long> ids = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc hit : top.scoreDocs) {
+                    ids.add((Long) ((FieldDoc) hit).fields[0]);
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.search.refresh-interval-ms:1000}")
+    public void refresh() {
+        int applied = 0;
+        try {
+            Change change;
+            while ((change = changes.poll()) != null) {
+                apply(change);
+                applied++;
+            }
+            if (applied > 0) {
+                commit();
+                log.debug("Indexed {} message changes", applied);
+            }
+            // skipped while the message table is being indexed, the feed is read once it is done
+            if (feedLock.tryLock()) {
+                try {
+                    readFeed();
+                } finally {
+                    feedLock.unlock();
+                }
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Failed to update the message search index after {} changes, it may need a rebuild: {}", applied, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        refresh();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private boolean index(boolean clear) {
+        if (!indexing.compareAndSet(false, true)) {
+            return false;
+        }
+        taskExecutor.execute(() -> {
+            feedLock.lock();
+            try {
+                // the changes made while the table is read are read again from the feed afterwards
+                long cursor = settledFeedId();
+                if (clear) {
+                    writer.deleteAll();
+                }
+                indexAll();
+                feedCursor.set(cursor);
+                commit();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to index the messages: {}", e.getMessage());
+            } finally {
+                feedLock.unlock();
+                indexing.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void indexAll() throws IOException {
+        int batchSize = properties.getRebuildBatchSize();
+        long cursor = 0;
+        long count = 0;
+        List<MessageRepository.MessageText> batch;
+        do {
+            batch = messageRepository.findTextsByIdGreaterThan(cursor, Limit.of(batchSize));
+            for (MessageRepository.MessageText message : batch) {
+                apply(Change.index(message.getId(), message.getChatRoomId(), message.getText()));
+            }
+            if (!batch.isEmpty()) {
+                cursor = batch.get(batch.size() - 1).getId();
+                commit();
+            }
+            count += batch.size();
+        } while (batch.size() == batchSize);
+        searcherManager.maybeRefresh();
+        log.info("Indexed {} messages", count);
+    }
+
+    /**
+     * Apply the message changes of the feed after the cursor, up to the settle time, and move the cursor past them.
+     */
+    private void readFeed() throws IOException {
+        long upTo = settledFeedId();
+        int batchSize = properties.getRebuildBatchSize();
+        long cursor = feedCursor.get();
+        long count = 0;
+        while (cursor < upTo) {
+            List<ChangeFeedEntry> batch = changeFeedEntryRepository.findMessageChanges(cursor, upTo, Limit.of(batchSize));
+            // the last change of a message wins, its current text is read once
+            Map<Long, ChangeKind> kinds = new LinkedHashMap<>();
+            batch.forEach(entry -> kinds.put(entry.getMessageId(), entry.getKind()));
+            List<Long> changedIds = kinds.keySet().stream().filter(id -> kinds.get(id) != ChangeKind.MESSAGE_DELETED).toList();
+            Map<Long, MessageRepository.MessageText> texts = new HashMap<>();
+            if (!changedIds.isEmpty()) {
+                messageRepository.findTextsByIdIn(changedIds).forEach(text -> texts.put(text.getId(), text));
+            }
+            for (Long messageId : kinds.keySet()) {
+                MessageRepository.MessageText text = texts.get(messageId);
+                apply(
+                    text != null
+                        ? Change.index(messageId, text.getChatRoomId(), text.getText())
+                        : new Change(Change.Kind.DELETE_MESSAGE, messageId, 0, null)
+                );
+            }
+            cursor = batch.size() < batchSize ? upTo : batch.get(batch.size() - 1).getId();
+            feedCursor.set(cursor);
+            count += batch.size();
+            // an empty read only moves the cursor in memory, it is written with the next commit
+            if (!batch.isEmpty()) {
+                commit();
+            }
+        }
+        if (count > 0) {
+            log.debug("Indexed {} message changes from the change feed", count);
+        }
+    }
+
+    /**
+     * The id of the newest change feed entry that no transaction still committing can slip behind.
+     */
+    private long settledFeedId() {
+        return SnowflakeIdGenerator.lowestIdAt(System.currentTimeMillis() - syncProperties.getSettleMs());
+    }
+
+    private long retentionStart() {
+        return SnowflakeIdGenerator.lowestIdAt(System.currentTimeMillis() - Duration.ofDays(syncProperties.getRetentionDays()).toMillis());
+    }
+
+    private void apply(Change change) throws IOException {
+        switch (change.kind()) {
+            case INDEX -> {
+                Document document = new Document();
+                document.add(new StringField(KEY, Long.toString(change.messageId()), Field.Store.NO));
+                document.add(new LongPoint(ID, change.messageId()));
+                document.add(new NumericDocValuesField(ID, change.messageId()));
+                document.add(new LongPoint(ROOM, change.roomId()));
+                document.add(new TextField(TEXT, change.text(), Field.Store.NO));
+                writer.updateDocument(new Term(KEY, Long.toString(change.messageId())), document);
+            }
+            case DELETE_MESSAGE -> writer.deleteDocuments(new Term(KEY, Long.toString(change.messageId())));
+            case DELETE_ROOM -> writer.deleteDocuments(LongPoint.newExactQuery(ROOM, change.roomId()));
+        }
+    }
+
+    private synchronized void commit() throws IOException {
+        writer.setLiveCommitData(Map.of(FEED_CURSOR, Long.toString(feedCursor.get())).entrySet());
+        writer.commit();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TEXT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken() && terms.size() < MAX_TERMS) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private record Change(Kind kind, long messageId, long roomId, String text) {
+        enum Kind {
+            INDEX,
+            DELETE_MESSAGE,
+            DELETE_ROOM,
+        }
+
+        static Change index(long messageId, long roomId, String text) {
+            return new Change(Kind.INDEX, messageId, roomId, text);
+        }
+    }
+}
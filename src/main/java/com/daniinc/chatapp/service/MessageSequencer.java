@@ -0,0 +1,50 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.repository.ChatRoomRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Hands out dense, per-room sequence numbers for {@link com.daniinc.chatapp.domain.Message}.
+ * <p>
+ * The last sequence number of a room is kept in its row and moved forward in the transaction inserting the messages. The
+ * row stays locked until that transaction ends, so rooms never contend with each other, writers of the same room are
+ * serialized even across instances, and the numbers of a rolled back transaction are handed out again, which keeps the
+ * sequence free of gaps. Transactions allocating in several rooms must do so in ascending room id order.
+ */
+@Service
+public class MessageSequencer {
+
+    private final ChatRoomRepository chatRoomRepository;
+
+    public MessageSequencer(ChatRoomRepository chatRoomRepository) {
+        this.chatRoomRepository = chatRoomRepository;
+    }
+
+    /**
+     * Allocate the next sequence number of a room.
+     *
+     * @param roomId the id of the chat room.
+     * @return the next sequence number, starting at 1.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long next(Long roomId) {
+        return allocate(roomId, 1);
+    }
+
+    /**
+     * Allocate consecutive sequence numbers of a room.
+     *
+     * @param roomId the id of the chat room.
+     * @param count the number of sequence numbers to allocate.
+     * @return the first allocated sequence number, the others follow it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long allocate(Long roomId, int count) {
+        if (chatRoomRepository.incrementLastSeq(roomId, count) == 0) {
+            throw new IllegalStateException("Chat room " + roomId + " does not exist");
+        }
+        return chatRoomRepository.findLastSeqById(roomId).orElseThrow() - count + 1;
+    }
+}
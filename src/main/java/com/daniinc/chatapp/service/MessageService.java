@@ -1,10 +1,12 @@
 package com.daniinc.chatapp.service;
 
+import com.daniinc.chatapp.domain.ChatRoom;
 import com.daniinc.chatapp.domain.Message;
-import com.daniinc.chatapp.domain.Participant;
 import com.daniinc.chatapp.domain.User;
+import com.daniinc.chatapp.repository.ChatRoomRepository;
 import com.daniinc.chatapp.repository.MessageRepository;
 import com.daniinc.chatapp.repository.ParticipantRepository;
+import com.daniinc.chatapp.service.dto.MediaItemDTO;
 import com.daniinc.chatapp.service.dto.MessageDTO;
 import com.daniinc.chatapp.service.dto.UserDTO;
 import com.daniinc.chatapp.service.mapper.MessageMapper;
@@ -14,7 +16,9 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -31,23 +35,48 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
 
+    private final ChatRoomRepository chatRoomRepository;
+
     private final MessageMapper messageMapper;
     private final UserService userService;
     private final ParticipantRepository participantRepository;
     private final UserMapper userMapper;
+    private final MessageSequencer messageSequencer;
+    private final RoomMembershipIndex roomMembershipIndex;
+    private final RecentMessageCache recentMessageCache;
+    private final InboxService inboxService;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ChangeFeedService changeFeedService;
+    private final VersionCounters versionCounters;
 
     public MessageService(
         MessageRepository messageRepository,
+        ChatRoomRepository chatRoomRepository,
         MessageMapper messageMapper,
         UserService userService,
         ParticipantRepository participantRepository,
-        UserMapper userMapper
+        UserMapper userMapper,
+        MessageSequencer messageSequencer,
+        RoomMembershipIndex roomMembershipIndex,
+        RecentMessageCache recentMessageCache,
+        InboxService inboxService,
+        MessageSearchIndex messageSearchIndex,
+        ChangeFeedService changeFeedService,
+        VersionCounters versionCounters
     ) {
         this.messageRepository = messageRepository;
+        this.chatRoomRepository = chatRoomRepository;
         this.messageMapper = messageMapper;
         this.userService = userService;
         this.participantRepository = participantRepository;
         this.userMapper = userMapper;
+        this.messageSequencer = messageSequencer;
+        this.roomMembershipIndex = roomMembershipIndex;
+        this.recentMessageCache = recentMessageCache;
+        this.inboxService = inboxService;
+        this.messageSearchIndex = messageSearchIndex;
+        this.changeFeedService = changeFeedService;
+        this.versionCounters = versionCounters;
     }
 
     /**
@@ -60,8 +89,18 @@ public class MessageService {
         log.debug("Request to save Message : {}", messageDTO);
         userService.getUserWithAuthorities().map(UserDTO::new).ifPresent(messageDTO::setUser);
         Message message = messageMapper.toEntity(messageDTO);
-        message = messageRepository.save(message);
-        return messageMapper.toDto(message);
+        Long roomId = message.getChatRoom() != null ? message.getChatRoom().getId() : null;
+        message.setSeq(roomId != null ? messageSequencer.next(roomId) : null);
+        message = messageRepository.saveAndFlush(message);
+        MessageDTO result = messageMapper.toDto(message);
+        if (roomId != null) {
+            chatRoomRepository.advanceLastMessage(message);
+            inboxService.messagesAdded(roomId, List.of(message));
+            messageSearchIndex.messagesAdded(List.of(message));
+            changeFeedService.messagesAdded(List.of(message));
+            recentMessageCache.append(roomId, result);
+        }
+        return result;
     }
 
     /**
@@ -72,8 +111,12 @@ public class MessageService {
      */
     public MessageDTO update(MessageDTO messageDTO) {
         log.debug("Request to update Message : {}", messageDTO);
+        evictRecentMessages(messageDTO.getId());
         Message message = messageMapper.toEntity(messageDTO);
         message = messageRepository.save(message);
+        inboxService.messageUpdated(message);
+        messageSearchIndex.messageUpdated(message);
+        changeFeedService.messageUpdated(message);
         return messageMapper.toDto(message);
     }
 
@@ -89,11 +132,20 @@ public class MessageService {
         return messageRepository
             .findById(messageDTO.getId())
             .map(existingMessage -> {
+                if (existingMessage.getChatRoom() != null) {
+                    recentMessageCache.evict(existingMessage.getChatRoom().getId());
+                }
                 messageMapper.partialUpdate(existingMessage, messageDTO);
 
                 return existingMessage;
             })
             .map(messageRepository::save)
+            .map(message -> {
+                inboxService.messageUpdated(message);
+                messageSearchIndex.messageUpdated(message);
+                changeFeedService.messageUpdated(message);
+                return message;
+            })
             .map(messageMapper::toDto);
     }
 
@@ -128,26 +180,150 @@ public class MessageService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Message : {}", id);
+        Optional<Long> roomId = messageRepository.findById(id).map(Message::getChatRoom).map(ChatRoom::getId);
+        roomId.ifPresent(recentMessageCache::evict);
         messageRepository.deleteById(id);
+        messageSearchIndex.messageDeleted(id);
+        roomId.ifPresent(chatRoomId -> changeFeedService.messageDeleted(chatRoomId, id));
+        roomId.ifPresent(this::resetLastMessage);
+    }
+
+    private void resetLastMessage(Long roomId) {
+        messageRepository.flush();
+        Optional<Message> last = messageRepository.findFirstByChatRoomIdOrderByIdDesc(roomId);
+        chatRoomRepository.setLastMessage(roomId, last.map(Message::getId).orElse(null), last.map(Message::getCreatedAt).orElse(null));
+        inboxService.lastMessageChanged(roomId, last);
     }
 
     public MessageDTO findLastMessageByRoomId(Long roomId) {
-        return messageRepository.findLastMessageByRoomId(roomId).map(messageMapper::toDto).orElse(null);
+        return messageRepository.findFirstByChatRoomIdOrderByIdDesc(roomId).map(messageMapper::toDto).orElse(null);
+    }
+
+    /**
+     * Get the ETag of the messages of a room, from the {@link VersionCounters}, without loading the messages.
+     *
+     * @param roomId the id of the chat room.
+     * @return the weak ETag.
+     * @throws UsernameNotFoundException if the current user does not take part in the room.
+     */
+    @Transactional(readOnly = true)
+    public String getRoomETag(Long roomId) {
+        checkParticipant(roomId);
+        return versionCounters.roomETag(roomId);
     }
 
     public Page<MessageDTO> getMessegesByRoomId(Long roomId, Pageable pageable) {
+        checkParticipant(roomId);
+        if (pageable.getPageNumber() == 0 && pageable.getSort().isUnsorted()) {
+            Optional<RecentMessageCache.RecentMessages> recent = recentMessageCache.newest(roomId, pageable.getPageSize());
+            if (recent.isPresent()) {
+                return new PageImpl<>(recent.orElseThrow().messages(), pageable, recent.orElseThrow().total());
+            }
+        }
+        return messageRepository.findByRoomId(roomId, pageable);
+    }
+
+    /**
+     * Get the messages of a room older than a given message, newest first. The cursor is the id of the oldest message
+     * the client already has: ids are time ordered, so this is a seek on the (chat_room_id, id) index and costs the same
+     * however far back the client scrolls.
+     *
+     * @param roomId the id of the chat room.
+     * @param beforeId the id of the oldest message already loaded, or {@code null} for the newest messages.
+     * @param limit the maximum number of messages to return.
+     * @return the messages, ordered by id descending.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getMessageHistory(Long roomId, Long beforeId, int limit) {
+        checkParticipant(roomId);
+        if (beforeId == null) {
+            Optional<RecentMessageCache.RecentMessages> recent = recentMessageCache.newest(roomId, limit);
+            if (recent.isPresent()) {
+                return recent.orElseThrow().messages();
+            }
+        }
+        return messageRepository.findByRoomIdAndIdLessThan(roomId, beforeId != null ? beforeId : Long.MAX_VALUE, Limit.of(limit));
+    }
+
+    /**
+     * Get the messages of a room whose sequence number is between {@code fromSeq} and {@code toSeq}, both inclusive.
+     * Used by clients to fetch only the messages they missed instead of reloading whole pages.
+     *
+     * @param roomId the id of the chat room.
+     * @param fromSeq the first sequence number to return.
+     * @param toSeq the last sequence number to return.
+     * @param limit the maximum number of messages to return.
+     * @return the messages, ordered by sequence number.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getMessagesByRoomIdAndSeqRange(Long roomId, long fromSeq, long toSeq, int limit) {
+        checkParticipant(roomId);
+        return messageRepository.findByRoomIdAndSeqBetween(roomId, fromSeq, toSeq, Limit.of(limit));
+    }
+
+    private void evictRecentMessages(Long messageId) {
+        messageRepository
+            .findById(messageId)
+            .map(Message::getChatRoom)
+            .ifPresent(chatRoom -> recentMessageCache.evict(chatRoom.getId()));
+    }
+
+    /**
+     * Check that the current user takes part in a room.
+     *
+     * @param roomId the id of the chat room.
+     * @throws UsernameNotFoundException if the current user does not take part in the room.
+     */
+    @Transactional(readOnly = true)
+    public void checkParticipant(Long roomId) {
         Optional<User> user = userService.getUserWithAuthorities();
         User foundUser = user.orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        Optional<Participant> participant = participantRepository.findByChatRoomIdAndUserId(roomId, foundUser.getId());
+        if (!roomMembershipIndex.isMember(roomId, foundUser.getId())) {
+            throw new UsernameNotFoundException("Participant not found in the chat room");
+        }
+    }
 
-        if (participant.isPresent()) {
-            return messageRepository.findByRoomId(roomId, pageable).map(messageMapper::toDto);
+    /**
+     * Get the media of a room page by page, newest first. Only the media columns are read, from the messages carrying one,
+     * so the cost of a page does not depend on the history of the room.
+     *
+     * @param roomId the id of the chat room.
+     * @param beforeId the id of the oldest media already loaded, or {@code null} for the newest media.
+     * @param limit the maximum number of media to return.
+     * @return the media, ordered by id descending.
+     */
+    @Transactional(readOnly = true)
+    public List<MediaItemDTO> getMediaGallery(Long roomId, Long beforeId, int limit) {
+        checkParticipant(roomId);
+        return messageRepository.findMediaByRoomIdAndIdLessThan(roomId, beforeId != null ? beforeId : Long.MAX_VALUE, Limit.of(limit));
+    }
+
+    /**
+     * Search the messages of the rooms of the current user, newest first. Matching messages are found by the
+     * {@link MessageSearchIndex}, only the page found is read from the database.
+     *
+     * @param text the words to search, the last one may be incomplete.
+     * @param roomId the id of the chat room to search in, or {@code null} for all the rooms of the current user.
+     * @param beforeId the id of the oldest message already found, or {@code null} for the newest messages.
+     * @param limit the maximum number of messages to return.
+     * @return the messages, ordered by id descending.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> search(String text, Long roomId, Long beforeId, int limit) {
+        long[] roomIds;
+        if (roomId != null) {
+            checkParticipant(roomId);
+            roomIds = new long[] { roomId };
+        } else {
+            User user = userService.getUserWithAuthorities().orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            roomIds = roomMembershipIndex.rooms(user.getId());
         }
-        throw new UsernameNotFoundException("Participant not found in the chat room");
+        List<Long> ids = messageSearchIndex.search(text, roomIds, beforeId, limit);
+        return ids.isEmpty() ? List.of() : messageRepository.findAllByIdIn(ids);
     }
 
     public List<String> getRoomMediaFiles(Long roomId) {
-        return messageRepository.findByMediaUrls(roomId).stream().map(Message::getMediaUrl).toList();
+        return messageRepository.findMediaUrlsByRoomId(roomId);
     }
 }
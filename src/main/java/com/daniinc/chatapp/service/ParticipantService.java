@@ -7,6 +7,7 @@ import com.daniinc.chatapp.service.dto.ParticipantDTO;
 import com.daniinc.chatapp.service.dto.UserDTO;
 import com.daniinc.chatapp.service.mapper.ParticipantMapper;
 import com.daniinc.chatapp.service.mapper.UserMapper;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -32,17 +33,26 @@ public class ParticipantService {
     private final ParticipantMapper participantMapper;
     private final UserService userService;
     private final UserMapper userMapper;
+    private final RoomMembershipIndex roomMembershipIndex;
+    private final InboxService inboxService;
+    private final ChangeFeedService changeFeedService;
 
     public ParticipantService(
         ParticipantRepository participantRepository,
         ParticipantMapper participantMapper,
         UserService userService,
-        UserMapper userMapper
+        UserMapper userMapper,
+        RoomMembershipIndex roomMembershipIndex,
+        InboxService inboxService,
+        ChangeFeedService changeFeedService
     ) {
         this.participantRepository = participantRepository;
         this.participantMapper = participantMapper;
         this.userService = userService;
         this.userMapper = userMapper;
+        this.roomMembershipIndex = roomMembershipIndex;
+        this.inboxService = inboxService;
+        this.changeFeedService = changeFeedService;
     }
 
     /**
@@ -55,24 +65,36 @@ public class ParticipantService {
         log.debug("Request to save Participant : {}", participantDTO);
         Participant participant = participantMapper.toEntity(participantDTO);
         participant = participantRepository.save(participant);
+        join(participant);
         return participantMapper.toDto(participant);
     }
 
     /**
-     * Update a participant.
+     * Update a participant. The room membership, inbox entry and change feed are only rebuilt when the room or the user
+     * changes.
      *
      * @param participantDTO the entity to save.
      * @return the persisted entity.
      */
     public ParticipantDTO update(ParticipantDTO participantDTO) {
         log.debug("Request to update Participant : {}", participantDTO);
+        Optional<Membership> previous = participantRepository.findById(participantDTO.getId()).map(Membership::of);
         Participant participant = participantMapper.toEntity(participantDTO);
-        participant = participantRepository.save(participant);
-        return participantMapper.toDto(participant);
+        boolean moved = previous.map(membership -> !membership.equals(Membership.of(participant))).orElse(true);
+        if (moved) {
+            previous.ifPresent(this::leave);
+            inboxService.removeEntry(participantDTO.getId());
+        }
+        Participant result = participantRepository.save(participant);
+        if (moved) {
+            join(result);
+        }
+        return participantMapper.toDto(result);
     }
 
     /**
-     * Partially update a participant.
+     * Partially update a participant. The room membership, inbox entry and change feed are only rebuilt when the room or
+     * the user changes.
      *
      * @param participantDTO the entity to update partially.
      * @return the persisted entity.
@@ -83,7 +105,13 @@ public class ParticipantService {
         return participantRepository
             .findById(participantDTO.getId())
             .map(existingParticipant -> {
+                Membership previous = Membership.of(existingParticipant);
                 participantMapper.partialUpdate(existingParticipant, participantDTO);
+                if (!previous.equals(Membership.of(existingParticipant))) {
+                    leave(previous);
+                    inboxService.removeEntry(existingParticipant.getId());
+                    join(existingParticipant);
+                }
 
                 return existingParticipant;
             })
@@ -122,6 +150,8 @@ public class ParticipantService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Participant : {}", id);
+        participantRepository.findById(id).map(Membership::of).ifPresent(this::leave);
+        inboxService.removeEntry(id);
         participantRepository.deleteById(id);
     }
 
@@ -133,4 +163,33 @@ public class ParticipantService {
             .map(participant -> userMapper.userToUserDTO(participant.getUser())) // Assuming UserDTO constructor takes User entity
             .collect(Collectors.toSet());
     }
+
+    private void join(Participant participant) {
+        evictMembership(Membership.of(participant));
+        inboxService.addEntries(List.of(participant));
+        changeFeedService.membersJoined(List.of(participant));
+    }
+
+    private void leave(Membership membership) {
+        evictMembership(membership);
+        if (membership.roomId() != null && membership.userId() != null) {
+            changeFeedService.membersLeft(membership.roomId(), List.of(membership.userId()));
+        }
+    }
+
+    private void evictMembership(Membership membership) {
+        roomMembershipIndex.evict(membership.roomId(), membership.userId() != null ? List.of(membership.userId()) : List.of());
+    }
+
+    /**
+     * The room and the user of a participant, captured before it changes.
+     */
+    private record Membership(Long roomId, Long userId) {
+        static Membership of(Participant participant) {
+            return new Membership(
+                participant.getChatRoom() != null ? participant.getChatRoom().getId() : null,
+                participant.getUser() != null ? participant.getUser().getId() : null
+            );
+        }
+    }
 }
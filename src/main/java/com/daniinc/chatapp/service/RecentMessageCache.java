@@ -0,0 +1,219 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.service.dto.MessageDTO;
+import com.daniinc.chatapp.service.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the newest messages of active rooms in memory, so that opening a room does not hit the database.
+ * <p>
+ * Every cached room has a ring buffer of its last {@code application.recent-messages.per-room} messages, and the total
+ * number of messages of the room. A buffer is loaded on the first read of the room, then messages are appended by the
+ * send path once committed. Rooms are evicted by activity, all buffers together hold at most
+ * {@code application.recent-messages.max-messages} messages. Updates and deletes drop the buffer of the room.
+ * <p>
+ * A buffer is read in its own read committed transaction, never in the snapshot of the caller, which may predate
+ * messages already committed. A message committed while a buffer is read may still be missing from it: appending to or
+ * evicting a room without a buffer bumps the stamp of the room, and a buffer read before the stamp changed is used once
+ * but not kept.
+ */
+@Service
+public class RecentMessageCache {
+
+    /**
+     * Number of stamps, rooms share them by the low bits of their id.
+     */
+    private static final int STAMPS = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(RecentMessageCache.class);
+
+    private final MessageRepository messageRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int perRoom;
+
+    private final Cache<Long, RoomBuffer> rooms;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+    public RecentMessageCache(
+        MessageRepository messageRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.transactionTemplate.setReadOnly(true);
+        ApplicationProperties.RecentMessages properties = applicationProperties.getRecentMessages();
+        this.perRoom = Math.max(1, properties.getPerRoom());
+        this.rooms = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaxMessages())
+            .weigher((Long roomId, RoomBuffer buffer) -> perRoom)
+            .build();
+    }
+
+    /**
+     * Get the newest messages of a room, if they are all in memory.
+     *
+     * @param roomId the id of the chat room.
+     * @param limit the number of messages wanted.
+     * @return the newest messages of the room, newest first, or empty if the buffer does not hold {@code limit} messages
+     * and the room has more.
+     */
+    public Optional<RecentMessages> newest(Long roomId, int limit) {
+        if (limit > perRoom) {
+            return Optional.empty();
+        }
+        RoomBuffer buffer = rooms.getIfPresent(roomId);
+        return Optional.ofNullable((buffer != null ? buffer : load(roomId)).newest(limit));
+    }
+
+    /**
+     * Add a message sent to a room, if the room is cached. Inside a transaction, the message is added after commit.
+     *
+     * @param roomId the id of the chat room.
+     * @param messageDTO the message.
+     */
+    public void append(Long roomId, MessageDTO messageDTO) {
+        AfterCommit.run(() ->
+            rooms
+                .asMap()
+                .compute(roomId, (id, buffer) -> {
+                    if (buffer == null) {
+                        // a buffer being read may not have the message
+                        stamps.incrementAndGet(stamp(id));
+                        return null;
+                    }
+                    return buffer.append(messageDTO);
+                })
+        );
+    }
+
+    /**
+     * Drop the buffer of a room. Inside a transaction, the buffer is dropped after commit.
+     *
+     * @param roomId the id of the chat room.
+     */
+    public void evict(Long roomId) {
+        AfterCommit.run(() ->
+            rooms
+                .asMap()
+                .compute(roomId, (id, buffer) -> {
+                    stamps.incrementAndGet(stamp(id));
+                    return null;
+                })
+        );
+    }
+
+    /**
+     * Read the buffer of a room, and keep it unless a message was appended or the room evicted meanwhile.
+     */
+    private RoomBuffer load(Long roomId) {
+        log.debug("Loading recent messages of room {}", roomId);
+        long stamp = stamps.get(stamp(roomId));
+        RoomBuffer loaded = transactionTemplate.execute(status -> {
+            List<MessageDTO> newest = messageRepository.findByRoomIdAndIdLessThan(roomId, Long.MAX_VALUE, Limit.of(perRoom));
+            long total = newest.size() < perRoom ? newest.size() : messageRepository.countByChatRoomId(roomId);
+            return new RoomBuffer(perRoom, newest, total);
+        });
+        // checked and kept atomically with respect to the appends, which bump the stamp under the same lock
+        RoomBuffer kept = rooms
+            .asMap()
+            .compute(roomId, (id, buffer) -> buffer != null || stamps.get(stamp(id)) != stamp ? buffer : loaded);
+        return kept != null ? kept : loaded;
+    }
+
+    private static int stamp(Long roomId) {
+        return (int) (roomId & (STAMPS - 1));
+    }
+
+    /**
+     * The newest messages of a room.
+     *
+     * @param messages the messages, newest first.
+     * @param total the total number of messages of the room.
+     */
+    public record RecentMessages(List<MessageDTO> messages, long total) {}
+
+    /**
+     * Ring buffer of the newest messages of a room, oldest first. Guarded by its own monitor.
+     */
+    private static final class RoomBuffer {
+
+        private final int capacity;
+
+        private final ArrayDeque<MessageDTO> messages;
+
+        private long total;
+
+        RoomBuffer(int capacity, List<MessageDTO> newestFirst, long total) {
+            this.capacity = capacity;
+            this.messages = new ArrayDeque<>(capacity);
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                messages.addLast(newestFirst.get(i));
+            }
+            this.total = total;
+        }
+
+        /**
+         * @return this buffer, or {@code null} if it can no longer be trusted and must be reloaded.
+         */
+        synchronized RoomBuffer append(MessageDTO messageDTO) {
+            MessageDTO last = messages.peekLast();
+            if (last == null || last.getId() < messageDTO.getId()) {
+                messages.addLast(messageDTO);
+            } else {
+                // committed concurrently with a newer message, or already read when the buffer was loaded
+                if (messages.stream().anyMatch(message -> message.getId().equals(messageDTO.getId()))) {
+                    return this;
+                }
+                if (messages.size() >= capacity && messages.peekFirst().getId() > messageDTO.getId()) {
+                    // older than the whole buffer, whether the total already counts it is unknown
+                    return null;
+                }
+                List<MessageDTO> ordered = new ArrayList<>(messages);
+                ordered.add(messageDTO);
+                ordered.sort(Comparator.comparing(MessageDTO::getId));
+                messages.clear();
+                messages.addAll(ordered);
+            }
+            total++;
+            if (messages.size() > capacity) {
+                messages.pollFirst();
+            }
+            return this;
+        }
+
+        synchronized RecentMessages newest(int limit) {
+            if (messages.size() < limit && messages.size() < total) {
+                return null;
+            }
+            List<MessageDTO> result = new ArrayList<>(Math.min(limit, messages.size()));
+            Iterator<MessageDTO> iterator = messages.descendingIterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                result.add(iterator.next());
+            }
+            return new RecentMessages(result, total);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.repository.ParticipantRepository;
+import com.daniinc.chatapp.service.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory index of chat room membership: the sorted user ids of every room, the sorted room ids of every user, and the
+ * sorted ids of the contacts of every user, the users sharing a room with them.
+ * <p>
+ * Entries are loaded from the database on first use and kept as primitive arrays, so membership checks are a binary search
+ * and message fan-out needs no query. Contacts are built from the two other maps. Each map is bounded by the total number of
+ * ids it holds ({@code application.membership-index.max-ids}). Services that change participants call
+ * {@link #evict(Long, Collection)} and the affected entries are dropped once the transaction commits.
+ */
+@Service
+public class RoomMembershipIndex {
+
+    private final Logger log = LoggerFactory.getLogger(RoomMembershipIndex.class);
+
+    private final ParticipantRepository participantRepository;
+
+    private final Cache<Long, long[]> roomMembers;
+
+    private final Cache<Long, long[]> userRooms;
+
+    private final Cache<Long, long[]> userContacts;
+
+    public RoomMembershipIndex(ParticipantRepository participantRepository, ApplicationProperties applicationProperties) {
+        this.participantRepository = participantRepository;
+        long maxIds = applicationProperties.getMembershipIndex().getMaxIds();
+        this.roomMembers = Caffeine.newBuilder().maximumWeight(maxIds).weigher(RoomMembershipIndex::weigh).build();
+        this.userRooms = Caffeine.newBuilder().maximumWeight(maxIds).weigher(RoomMembershipIndex::weigh).build();
+        this.userContacts = Caffeine.newBuilder().maximumWeight(maxIds).weigher(RoomMembershipIndex::weigh).build();
+    }
+
+    /**
+     * Get the members of a room.
+     *
+     * @param roomId the id of the chat room.
+     * @return the sorted ids of the users taking part in the room, must not be modified.
+     */
+    public long[] members(Long roomId) {
+        return roomMembers.get(roomId, id -> toSortedArray(participantRepository.findUserIdsByChatRoomId(id)));
+    }
+
+    /**
+     * Get the rooms of a user.
+     *
+     * @param userId the id of the user.
+     * @return the sorted ids of the chat rooms the user takes part in, must not be modified.
+     */
+    public long[] rooms(Long userId) {
+        return userRooms.get(userId, id -> toSortedArray(participantRepository.findChatRoomIdsByUserId(id)));
+    }
+
+    /**
+     * Get the contacts of a user.
+     *
+     * @param userId the id of the user.
+     * @return the sorted ids of the other users taking part in at least one of the rooms of the user, must not be modified.
+     */
+    public long[] contacts(Long userId) {
+        return userContacts.get(userId, id ->
+            Arrays.stream(rooms(id))
+                .flatMap(roomId -> Arrays.stream(members(roomId)))
+                .filter(contactId -> contactId != id)
+                .sorted()
+                .distinct()
+                .toArray()
+        );
+    }
+
+    public boolean isMember(Long roomId, Long userId) {
+        return userId != null && Arrays.binarySearch(members(roomId), userId) >= 0;
+    }
+
+    /**
+     * Drop the cached membership of a room and of some of its (current or former) users. When called inside a transaction,
+     * the entries are dropped after commit, so they are never reloaded with uncommitted data.
+     *
+     * @param roomId the id of the chat room, may be {@code null}.
+     * @param userIds the ids of the users whose membership changed.
+     */
+    public void evict(Long roomId, Collection<Long> userIds) {
+        AfterCommit.run(() -> doEvict(roomId, userIds));
+    }
+
+    private void doEvict(Long roomId, Collection<Long> userIds) {
+        log.debug("Evicting membership of room {} and users {}", roomId, userIds);
+        if (roomId != null) {
+            long[] members = roomMembers.getIfPresent(roomId);
+            roomMembers.invalidate(roomId);
+            if (members != null) {
+                Arrays.stream(members).forEach(userRooms::invalidate);
+                Arrays.stream(members).forEach(userContacts::invalidate);
+            } else if (userContacts.estimatedSize() > 0) {
+                // the members were evicted, the committed ones are read back: the users who left are among the given ones
+                participantRepository.findUserIdsByChatRoomId(roomId).forEach(userContacts::invalidate);
+            }
+        }
+        userRooms.invalidateAll(userIds);
+        userContacts.invalidateAll(userIds);
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+    }
+
+    private static int weigh(Long key, long[] ids) {
+        return ids.length + 1;
+    }
+}
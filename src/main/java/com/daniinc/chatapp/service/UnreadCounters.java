@@ -0,0 +1,227 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.service.util.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind unread counts of the {@link com.daniinc.chatapp.domain.InboxEntry inbox entries}.
+ * <p>
+ * The send path only adds the ids of the new messages to an in-memory list per room and sender, the map is striped by room
+ * so busy rooms do not contend with each other. Every {@code application.unread.flush-interval-ms} the lists are written
+ * with one JDBC batch. The readers who read none of the pending messages of a sender, nearly all of them, get their count
+ * with one statement per room and sender: a room receiving hundreds of messages between two flushes costs a single
+ * statement, whatever the number of its readers. The readers whose read marker falls between the pending messages, because
+ * they read them on another instance, get one more by message after the oldest one, each an indexed update of the few rows
+ * in that range, so that they only count the messages newer than their marker. Pending counts are added to the persisted
+ * ones by {@link #pending(Long, Long, Long)}, so reads see them before they are flushed.
+ */
+@Service
+public class UnreadCounters {
+
+    private static final String INCREMENT_SQL =
+        "UPDATE inbox_entry SET unread_count = unread_count + ? " +
+        "WHERE chat_room_id = ? AND user_id <> ? AND (last_read_message_id IS NULL OR last_read_message_id < ?)";
+
+    private static final String INCREMENT_PARTLY_READ_SQL =
+        "UPDATE inbox_entry SET unread_count = unread_count + 1 " +
+        "WHERE chat_room_id = ? AND user_id <> ? AND last_read_message_id >= ? AND last_read_message_id < ?";
+
+    /**
+     * Sender of messages without a user, no user has this id so they are unread for everybody.
+     */
+    private static final long NO_SENDER = 0L;
+
+    private final Logger log = LoggerFactory.getLogger(UnreadCounters.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, RoomDelta> pending = new ConcurrentHashMap<>();
+
+    public UnreadCounters(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // flushes commit on their own, also when called from the transaction of a reader
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Count new messages of a room as unread for everybody but their sender. Inside a transaction, they are counted after
+     * commit.
+     *
+     * @param roomId the id of the chat room.
+     * @param senderId the id of the sender, may be {@code null}.
+     * @param messageIds the ids of the messages, readers only count the ones newer than their read marker.
+     */
+    public void add(Long roomId, Long senderId, long[] messageIds) {
+        if (messageIds.length == 0) {
+            return;
+        }
+        long sender = senderId != null ? senderId : NO_SENDER;
+        AfterCommit.run(() ->
+            pending.compute(roomId, (id, delta) -> {
+                RoomDelta result = delta != null ? delta : new RoomDelta();
+                result.add(sender, messageIds);
+                return result;
+            })
+        );
+    }
+
+    /**
+     * Get the number of messages of a room not yet flushed that are unread for a user.
+     *
+     * @param roomId the id of the chat room.
+     * @param userId the id of the user.
+     * @param lastReadMessageId the id of the last message read by the user, may be {@code null}.
+     * @return the number of pending unread messages.
+     */
+    public long pending(Long roomId, Long userId, Long lastReadMessageId) {
+        RoomDelta delta = pending.get(roomId);
+        return delta != null ? delta.unreadFor(userId, lastReadMessageId) : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${application.unread.flush-interval-ms:1000}")
+    public void flush() {
+        Map<Long, RoomDelta> deltas = new HashMap<>();
+        for (Long roomId : pending.keySet()) {
+            RoomDelta delta = pending.remove(roomId);
+            if (delta != null) {
+                deltas.put(roomId, delta);
+            }
+        }
+        write(deltas);
+    }
+
+    /**
+     * Write the pending counts of a single room right away, before its unread state is reset.
+     */
+    public void flush(Long roomId) {
+        RoomDelta delta = pending.remove(roomId);
+        if (delta != null) {
+            write(Map.of(roomId, delta));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    private void write(Map<Long, RoomDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> partlyReadRows = new ArrayList<>();
+        deltas.forEach((roomId, delta) -> delta.toRows(roomId, rows, partlyReadRows));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INCREMENT_SQL, rows);
+                if (!partlyReadRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INCREMENT_PARTLY_READ_SQL, partlyReadRows);
+                }
+            });
+            log.debug("Flushed {} unread counters of {} rooms", rows.size(), deltas.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush {} unread counters, keeping them for the next flush: {}", rows.size(), e.getMessage());
+            deltas.forEach((roomId, delta) -> pending.merge(roomId, delta, RoomDelta::merge));
+        }
+    }
+
+    /**
+     * Unread messages of a room since the last flush, their ids by sender. Guarded by its own monitor.
+     */
+    private static final class RoomDelta {
+
+        private final Map<Long, MessageIds> idsBySender = new HashMap<>(4);
+
+        synchronized void add(long senderId, long[] messageIds) {
+            idsBySender.computeIfAbsent(senderId, id -> new MessageIds()).add(messageIds);
+        }
+
+        synchronized RoomDelta merge(RoomDelta other) {
+            other.idsBySender.forEach((senderId, ids) -> add(senderId, ids.sorted()));
+            return this;
+        }
+
+        synchronized long unreadFor(Long userId, Long lastReadMessageId) {
+            long unread = 0;
+            for (Map.Entry<Long, MessageIds> entry : idsBySender.entrySet()) {
+                if (!entry.getKey().equals(userId)) {
+                    unread += entry.getValue().countAfter(lastReadMessageId);
+                }
+            }
+            return unread;
+        }
+
+        synchronized void toRows(Long roomId, List<Object[]> rows, List<Object[]> partlyReadRows) {
+            idsBySender.forEach((senderId, messageIds) -> {
+                long[] ids = messageIds.sorted();
+                // readers who read none of the messages count all of them
+                rows.add(new Object[] { ids.length, roomId, senderId, ids[0] });
+                // a reader with a marker between the first and the last message counts one per message newer than it
+                for (int i = 1; i < ids.length; i++) {
+                    partlyReadRows.add(new Object[] { roomId, senderId, ids[0], ids[i] });
+                }
+            });
+        }
+    }
+
+    /**
+     * Growable list of message ids, sorted on demand. Guarded by the monitor of its {@link RoomDelta}.
+     */
+    private static final class MessageIds {
+
+        private long[] ids = new long[4];
+
+        private int size;
+
+        private boolean sorted = true;
+
+        void add(long[] messageIds) {
+            if (size + messageIds.length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, size + messageIds.length));
+            }
+            for (long messageId : messageIds) {
+                sorted &= size == 0 || ids[size - 1] <= messageId;
+                ids[size++] = messageId;
+            }
+        }
+
+        long[] sorted() {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                sorted = true;
+            }
+            return Arrays.copyOf(ids, size);
+        }
+
+        long countAfter(Long messageId) {
+            if (messageId == null) {
+                return size;
+            }
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] > messageId) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.daniinc.chatapp.domain.User;
+import com.daniinc.chatapp.repository.UserRepository;
+import com.daniinc.chatapp.service.dto.UserDTO;
+import com.daniinc.chatapp.service.util.AfterCommit;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory prefix index of the activated users, by the words of their first name, last name and login.
+ * <p>
+ * Words are lower-cased and stripped of their accents, and kept in a sorted map to the sorted ids of the users having them,
+ * so the users with a word starting with a query term are a range of that map. Every term of the query must start a word
+ * of the user; users are ranked by exact word matches first, then by whether their first name starts with the query. The
+ * index is loaded from the database on first use; {@link UserService} reports the users it changes, and they are applied
+ * once the transaction commits. Every node has its own index: every {@code application.user-search.refresh-interval-ms}
+ * the users modified since the previous refresh are read again, and the users no longer activated are dropped, so the
+ * changes made on other nodes show up within that interval.
+ */
+@Service
+public class UserSearchIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private final UserRepository userRepository;
+
+    private final ApplicationProperties.UserSearch properties;
+
+    private final Map<Long, Entry> users = new ConcurrentHashMap<>();
+
+    private final NavigableMap<String, long[]> postings = new ConcurrentSkipListMap<>();
+
+    private volatile boolean loaded;
+
+    private volatile Instant refreshedAt;
+
+    public UserSearchIndex(UserRepository userRepository, ApplicationProperties applicationProperties) {
+        this.userRepository = userRepository;
+        this.properties = applicationProperties.getUserSearch();
+    }
+
+    /**
+     * Search the activated users.
+     *
+     * @param query the words the user names start with, in any order.
+     * @param pageable the pagination information, its sort is ignored in favor of the ranking.
+     * @return the page of matching users, best matches first.
+     */
+    public Page<UserDTO> search(String query, Pageable pageable) {
+        load();
+        String[] terms = words(query);
+        List<Match> matches = new ArrayList<>();
+        if (terms.length == 0) {
+            users.values().forEach(entry -> matches.add(new Match(entry, 0)));
+        } else {
+            for (long id : candidates(terms)) {
+                Entry entry = users.get(id);
+                int score = entry == null ? 0 : score(entry, terms);
+                if (score > 0) {
+                    matches.add(new Match(entry, score));
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::score).reversed().thenComparing(match -> match.entry().user().getLogin()));
+        List<UserDTO> content = matches.stream().map(match -> match.entry().user()).toList();
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), content.size());
+            content = content.subList(from, Math.min(from + pageable.getPageSize(), content.size()));
+        }
+        return new PageImpl<>(content, pageable, matches.size());
+    }
+
+    /**
+     * Index a created or changed user, or drop it when it is not activated. When called inside a transaction, the user is
+     * indexed after commit.
+     *
+     * @param user the user, in its new state.
+     */
+    public void update(User user) {
+        Long id = user.getId();
+        if (!user.isActivated()) {
+            remove(id);
+            return;
+        }
+        UserDTO dto = new UserDTO(user);
+        AfterCommit.run(() -> apply(id, dto));
+    }
+
+    /**
+     * Drop a deleted user. When called inside a transaction, the user is dropped after commit.
+     *
+     * @param id the id of the user.
+     */
+    public void remove(Long id) {
+        AfterCommit.run(() -> apply(id, null));
+    }
+
+    /**
+     * Apply the users modified since the previous refresh, and drop the users deleted or deactivated, whichever node
+     * changed them.
+     * <p>
+     * This is scheduled to get fired every {@code application.user-search.refresh-interval-ms}.
+     */
+    @Scheduled(
+        initialDelayString = "${application.user-search.refresh-interval-ms:60000}",
+        fixedDelayString = "${application.user-search.refresh-interval-ms:60000}"
+    )
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        Instant now = Instant.now();
+        // the previous interval is read again, for the transactions committed late and the clocks of the other nodes
+        List<User> changed = userRepository.findAllByLastModifiedDateGreaterThanEqual(
+            refreshedAt.minusMillis(properties.getRefreshIntervalMs())
+        );
+        Set<Long> activated = new HashSet<>(userRepository.findActivatedIds());
+        synchronized (this) {
+            changed.forEach(user -> apply(user.getId(), user.isActivated() ? new UserDTO(user) : null));
+            users.keySet().stream().filter(id -> !activated.contains(id)).toList().forEach(id -> apply(id, null));
+        }
+        refreshedAt = now;
+        log.debug("Refreshed the search index with {} changed users, {} users indexed", changed.size(), users.size());
+    }
+
+    private long[] candidates(String[] terms) {
+        // the longest term has the fewest words starting with it
+        String term = Arrays.stream(terms).max(Comparator.comparingInt(String::length)).orElseThrow();
+        Map<String, long[]> range = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+        return range.values().stream().flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+    }
+
+    private static int score(Entry entry, String[] terms) {
+        int score = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (String word : entry.words()) {
+                if (word.equals(term)) {
+                    best = 2;
+                    break;
+                }
+                if (word.startsWith(term)) {
+                    best = 1;
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        if (entry.words().length > 0 && entry.words()[0].startsWith(terms[0])) {
+            score++;
+        }
+        return score;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                refreshedAt = Instant.now();
+                Map<String, List<Long>> words = new HashMap<>();
+                for (User user : userRepository.findAllByIdNotNullAndActivatedIsTrue(Pageable.unpaged())) {
+                    Entry entry = entry(new UserDTO(user));
+                    users.put(user.getId(), entry);
+                    for (String word : entry.words()) {
+                        words.computeIfAbsent(word, key -> new ArrayList<>()).add(user.getId());
+                    }
+                }
+                words.forEach((word, ids) -> postings.put(word, ids.stream().mapToLong(Long::longValue).sorted().toArray()));
+                loaded = true;
+                log.debug("Loaded {} users in the search index, with {} words", users.size(), postings.size());
+            }
+        }
+    }
+
+    private synchronized void apply(Long id, UserDTO user) {
+        // before the first search, the load reads the committed state
+        if (!loaded) {
+            return;
+        }
+        Entry previous = users.remove(id);
+        if (previous != null) {
+            for (String word : previous.words()) {
+                long[] ids = postings.get(word);
+                int index = ids == null ? -1 : Arrays.binarySearch(ids, id);
+                if (index >= 0) {
+                    long[] rest = new long[ids.length - 1];
+                    System.arraycopy(ids, 0, rest, 0, index);
+                    System.arraycopy(ids, index + 1, rest, index, rest.length - index);
+                    if (rest.length == 0) {
+                        postings.remove(word);
+                    } else {
+                        postings.put(word, rest);
+                    }
+                }
+            }
+        }
+        if (user != null) {
+            index(id, user);
+        }
+    }
+
+    private void index(Long id, UserDTO user) {
+        Entry entry = entry(user);
+        users.put(id, entry);
+        for (String word : entry.words()) {
+            long[] ids = postings.get(word);
+            postings.put(word, ids == null ? new long[] { id } : merge(ids, new long[] { id }));
+        }
+    }
+
+    private static Entry entry(UserDTO user) {
+        return new Entry(user, words(user.getFirstName(), user.getLastName(), user.getLogin()));
+    }
+
+    /**
+     * Split texts in lower-case words without accents, in order and without duplicates.
+     */
+    private static String[] words(String... texts) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text != null) {
+                String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+                for (String word : SEPARATORS.split(normalized.toLowerCase(Locale.ROOT))) {
+                    if (!word.isEmpty()) {
+                        words.add(word);
+                    }
+                }
+            }
+        }
+        return words.toArray(String[]::new);
+    }
+
+    /**
+     * Merge two sorted arrays of ids, without duplicates.
+     */
+    private static long[] merge(long[] a, long[] b) {
+        long[] merged = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            long next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (n == 0 || merged[n - 1] != next) {
+                merged[n++] = next;
+            }
+        }
+        return n == merged.length ? merged : Arrays.copyOf(merged, n);
+    }
+
+    private record Entry(UserDTO user, String[] words) {}
+
+    private record Match(Entry entry, int score) {}
+}
@@ -47,18 +47,22 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
+    private final UserSearchIndex userSearchIndex;
+
     public UserService(
         UserRepository userRepository,
         PasswordEncoder passwordEncoder,
         PersistentTokenRepository persistentTokenRepository,
         AuthorityRepository authorityRepository,
-        CacheManager cacheManager
+        CacheManager cacheManager,
+        UserSearchIndex userSearchIndex
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.persistentTokenRepository = persistentTokenRepository;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.userSearchIndex = userSearchIndex;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -70,6 +74,7 @@ public class UserService {
                 user.setActivated(true);
                 user.setActivationKey(null);
                 this.clearUserCaches(user);
+                userSearchIndex.update(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -140,6 +145,7 @@ public class UserService {
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
         this.clearUserCaches(newUser);
+        userSearchIndex.update(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -151,6 +157,7 @@ public class UserService {
         userRepository.delete(existingUser);
         userRepository.flush();
         this.clearUserCaches(existingUser);
+        userSearchIndex.remove(existingUser.getId());
         return true;
     }
 
@@ -185,6 +192,7 @@ public class UserService {
         }
         userRepository.save(user);
         this.clearUserCaches(user);
+        userSearchIndex.update(user);
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -221,6 +229,7 @@ public class UserService {
                     .forEach(managedAuthorities::add);
                 userRepository.save(user);
                 this.clearUserCaches(user);
+                userSearchIndex.update(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -233,6 +242,7 @@ public class UserService {
             .ifPresent(user -> {
                 userRepository.delete(user);
                 this.clearUserCaches(user);
+                userSearchIndex.remove(user.getId());
                 log.debug("Deleted User: {}", user);
             });
     }
@@ -259,6 +269,7 @@ public class UserService {
                 user.setImageUrl(imageUrl);
                 userRepository.save(user);
                 this.clearUserCaches(user);
+                userSearchIndex.update(user);
                 log.debug("Changed Information for User: {}", user);
             });
     }
@@ -356,6 +367,7 @@ public class UserService {
             .ifPresent(user -> {
                 user.setImageUrl(imageUrl);
                 userRepository.save(user);
+                userSearchIndex.update(user);
             });
         ResponseEntity.status(HttpStatus.OK).body("Successfully changed user image url");
     }
@@ -0,0 +1,88 @@
+package com.daniinc.chatapp.service;
+
+import com.daniinc.chatapp.repository.ChatRoomRepository;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.TreeSet;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Version counters of the rooms, from which the REST resources build weak ETags with one aggregate query instead of running
+ * their queries.
+ * <p>
+ * The versions are persisted in the room rows: new messages move {@code chat_room.last_seq}, every other change of a room
+ * increments {@code chat_room.version} in its transaction. Both only grow, in commit order since the row stays locked until
+ * the commit, and every instance reads the same ones, so an ETag never outlives the data it describes. The ETags also hold
+ * the newest modification date of the participants, whose profiles are shown with the rooms and messages, and the room list
+ * ETag the newest membership change of its user in the change feed.
+ */
+@Service
+public class VersionCounters {
+
+    private final ChatRoomRepository chatRoomRepository;
+
+    public VersionCounters(ChatRoomRepository chatRoomRepository) {
+        this.chatRoomRepository = chatRoomRepository;
+    }
+
+    /**
+     * A room changed, other than by new messages: its participants, one of its messages or its own fields.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void roomChanged(Long roomId) {
+        chatRoomRepository.incrementVersion(roomId);
+    }
+
+    /**
+     * Some rooms changed, other than by new messages. The rows are locked in ascending id order, like
+     * {@link MessageSequencer} does.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void roomsChanged(Collection<Long> roomIds) {
+        for (Long roomId : new TreeSet<>(roomIds)) {
+            chatRoomRepository.incrementVersion(roomId);
+        }
+    }
+
+    /**
+     * Get the ETag of the messages of a room.
+     */
+    @Transactional(readOnly = true)
+    public String roomETag(Long roomId) {
+        return chatRoomRepository
+            .findVersionById(roomId)
+            .map(version -> eTag(version.getLastSeq(), version.getVersion(), millis(version.getProfilesModifiedAt())))
+            .orElse(null);
+    }
+
+    /**
+     * Get the ETag of the room list of a user.
+     *
+     * @param userId the id of the user.
+     * @return the ETag.
+     */
+    @Transactional(readOnly = true)
+    public String roomListETag(Long userId) {
+        ChatRoomRepository.RoomListVersion version = chatRoomRepository.findRoomListVersionByUserId(userId);
+        return eTag(
+            version.getRooms(),
+            version.getVersions(),
+            version.getMembershipChangeId(),
+            millis(version.getProfilesModifiedAt())
+        );
+    }
+
+    private static Long millis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : null;
+    }
+
+    private static String eTag(Long... versions) {
+        StringBuilder eTag = new StringBuilder("W/\"");
+        for (int i = 0; i < versions.length; i++) {
+            eTag.append(i > 0 ? "-" : "").append(Long.toString(versions[i] != null ? versions[i] : 0, 36));
+        }
+        return eTag.append('"').toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.daniinc.chatapp.service.dto;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.daniinc.chatapp.domain.InboxEntry} entity.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class InboxEntryDTO implements Serializable {
+
+    private Long id;
+
+    private Long chatRoomId;
+
+    private Long lastMessageId;
+
+    private ZonedDateTime lastActivityAt;
+
+    private String lastMessagePreview;
+
+    private int unreadCount;
+
+    private Long lastReadMessageId;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getChatRoomId() {
+        return chatRoomId;
+    }
+
+    public void setChatRoomId(Long chatRoomId) {
+        this.chatRoomId = chatRoomId;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public ZonedDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(ZonedDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Long getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    public void setLastReadMessageId(Long lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InboxEntryDTO)) {
+            return false;
+        }
+
+        InboxEntryDTO inboxEntryDTO = (InboxEntryDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, inboxEntryDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "InboxEntryDTO{" +
+            "id=" + getId() +
+            ", chatRoomId=" + getChatRoomId() +
+            ", lastMessageId=" + getLastMessageId() +
+            ", lastActivityAt='" + getLastActivityAt() + "'" +
+            ", unreadCount=" + getUnreadCount() +
+            ", lastReadMessageId=" + getLastReadMessageId() +
+            "}";
+    }
+}
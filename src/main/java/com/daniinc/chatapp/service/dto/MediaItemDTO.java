@@ -0,0 +1,96 @@
+package com.daniinc.chatapp.service.dto;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A DTO for an entry of the media gallery of a room, the media of a {@link com.daniinc.chatapp.domain.Message} without its text.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class MediaItemDTO implements Serializable {
+
+    private Long id;
+
+    private String mediaUrl;
+
+    private ZonedDateTime createdAt;
+
+    private Long userId;
+
+    public MediaItemDTO() {}
+
+    /**
+     * Constructor of the JPQL projection of {@code MessageRepository#findMediaByRoomIdAndIdLessThan}.
+     */
+    public MediaItemDTO(Long id, String mediaUrl, ZonedDateTime createdAt, Long userId) {
+        this.id = id;
+        this.mediaUrl = mediaUrl;
+        this.createdAt = createdAt;
+        this.userId = userId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getMediaUrl() {
+        return mediaUrl;
+    }
+
+    public void setMediaUrl(String mediaUrl) {
+        this.mediaUrl = mediaUrl;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MediaItemDTO)) {
+            return false;
+        }
+
+        MediaItemDTO mediaItemDTO = (MediaItemDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, mediaItemDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MediaItemDTO{" +
+            "id=" + getId() +
+            ", mediaUrl='" + getMediaUrl() + "'" +
+            ", createdAt='" + getCreatedAt() + "'" +
+            ", userId=" + getUserId() +
+            "}";
+    }
+}
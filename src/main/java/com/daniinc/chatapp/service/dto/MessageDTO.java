@@ -18,10 +18,50 @@ public class MessageDTO implements Serializable {
 
     private String mediaUrl;
 
+    private Long seq;
+
     private UserDTO user;
 
     private ChatRoomDTO chatRoom;
 
+    public MessageDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * Constructor for JPQL projections, see {@link com.daniinc.chatapp.repository.MessageRepository#MESSAGE_DTO}: the
+     * sender is selected as flat columns, {@code userId} is {@code null} for a message without sender.
+     */
+    public MessageDTO(
+        Long id,
+        String text,
+        ZonedDateTime createdAt,
+        String mediaUrl,
+        Long seq,
+        Long chatRoomId,
+        Long userId,
+        String userLogin,
+        String userFirstName,
+        String userLastName,
+        String userImageUrl
+    ) {
+        this.id = id;
+        this.text = text;
+        this.createdAt = createdAt;
+        this.mediaUrl = mediaUrl;
+        this.seq = seq;
+        this.chatRoom = new ChatRoomDTO();
+        this.chatRoom.setId(chatRoomId);
+        if (userId != null) {
+            this.user = new UserDTO();
+            this.user.setId(userId);
+            this.user.setLogin(userLogin);
+            this.user.setFirstName(userFirstName);
+            this.user.setLastName(userLastName);
+            this.user.setImageUrl(userImageUrl);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -54,6 +94,14 @@ public class MessageDTO implements Serializable {
         this.mediaUrl = mediaUrl;
     }
 
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
     public UserDTO getUser() {
         return user;
     }
@@ -99,6 +147,7 @@ public class MessageDTO implements Serializable {
             ", text='" + getText() + "'" +
             ", createdAt='" + getCreatedAt() + "'" +
             ", mediaUrl='" + getMediaUrl() + "'" +
+            ", seq=" + getSeq() +
             ", user=" + getUser() +
             ", chatRoom=" + getChatRoom() +
             "}";
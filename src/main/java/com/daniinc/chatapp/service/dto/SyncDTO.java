@@ -0,0 +1,111 @@
+package com.daniinc.chatapp.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the changes of the rooms of a user since a sync cursor, see {@link com.daniinc.chatapp.domain.ChangeFeedEntry}.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class SyncDTO implements Serializable {
+
+    private Long cursor;
+
+    private boolean reset;
+
+    private boolean hasMore;
+
+    private List<MessageDTO> messages = new ArrayList<>();
+
+    private List<Long> deletedMessageIds = new ArrayList<>();
+
+    private List<ChatRoomDTO> rooms = new ArrayList<>();
+
+    private List<Long> leftRoomIds = new ArrayList<>();
+
+    /**
+     * The cursor of the next sync.
+     */
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Long cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Whether the cursor was absent or too old, and the client must reload its rooms before syncing from the new cursor.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+
+    /**
+     * Whether there are more changes, to get from the new cursor right away.
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * The messages created or updated, in their current state, newest first.
+     */
+    public List<MessageDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageDTO> messages) {
+        this.messages = messages;
+    }
+
+    public List<Long> getDeletedMessageIds() {
+        return deletedMessageIds;
+    }
+
+    public void setDeletedMessageIds(List<Long> deletedMessageIds) {
+        this.deletedMessageIds = deletedMessageIds;
+    }
+
+    /**
+     * The rooms of the user with new messages or members, or joined by the user, in their current state.
+     */
+    public List<ChatRoomDTO> getRooms() {
+        return rooms;
+    }
+
+    public void setRooms(List<ChatRoomDTO> rooms) {
+        this.rooms = rooms;
+    }
+
+    public List<Long> getLeftRoomIds() {
+        return leftRoomIds;
+    }
+
+    public void setLeftRoomIds(List<Long> leftRoomIds) {
+        this.leftRoomIds = leftRoomIds;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SyncDTO{" +
+            "cursor=" + getCursor() +
+            ", reset=" + isReset() +
+            ", hasMore=" + isHasMore() +
+            ", messages=" + getMessages().size() +
+            ", deletedMessageIds=" + getDeletedMessageIds() +
+            ", rooms=" + getRooms().size() +
+            ", leftRoomIds=" + getLeftRoomIds() +
+            "}";
+    }
+}
@@ -1,32 +1,32 @@
 package com.daniinc.chatapp.service.mapper;
 
 import com.daniinc.chatapp.domain.ChatRoom;
-import com.daniinc.chatapp.service.ChatRoomService;
-import com.daniinc.chatapp.service.MessageService;
-import com.daniinc.chatapp.service.ParticipantService;
 import com.daniinc.chatapp.service.dto.ChatRoomDTO;
-import com.daniinc.chatapp.service.dto.ParticipantDTO;
-import java.util.Set;
-import org.checkerframework.checker.units.qual.C;
 import org.mapstruct.*;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 
 /**
  * Mapper for the entity {@link ChatRoom} and its DTO {@link ChatRoomDTO}.
+ * <p>
+ * The participants and the last message are not mapped here, {@link com.daniinc.chatapp.service.ChatRoomDtoAssembler}
+ * loads them for a whole list of rooms at once.
  */
 @Mapper(componentModel = "spring")
-public abstract class ChatRoomMapper implements EntityMapper<ChatRoomDTO, ChatRoom> {
+public interface ChatRoomMapper extends EntityMapper<ChatRoomDTO, ChatRoom> {
+    @Mapping(target = "lastMessage", ignore = true)
+    @Mapping(target = "participants", ignore = true)
+    ChatRoomDTO toDto(ChatRoom chatRoom);
 
-    @Autowired
-    @Lazy
-    MessageService messageService;
+    @Mapping(target = "lastMessage", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastSeq", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    ChatRoom toEntity(ChatRoomDTO chatRoomDTO);
 
-    @Autowired
-    @Lazy
-    ParticipantService participantService;
-
-    @Mapping(target = "lastMessage", expression = "java(messageService.findLastMessageByRoomId(chatRoom.getId()))")
-    @Mapping(target = "participants", expression = "java(participantService.filterListByLoggedInUser(chatRoom.getParticipants()))")
-    public abstract ChatRoomDTO toDto(ChatRoom chatRoom);
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "lastMessage", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastSeq", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void partialUpdate(@MappingTarget ChatRoom chatRoom, ChatRoomDTO chatRoomDTO);
 }
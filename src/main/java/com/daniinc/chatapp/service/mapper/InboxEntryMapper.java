@@ -0,0 +1,19 @@
+package com.daniinc.chatapp.service.mapper;
+
+import com.daniinc.chatapp.domain.InboxEntry;
+import com.daniinc.chatapp.service.dto.InboxEntryDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link InboxEntry} and its DTO {@link InboxEntryDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface InboxEntryMapper extends EntityMapper<InboxEntryDTO, InboxEntry> {
+    @Mapping(target = "userId", ignore = true)
+    InboxEntry toEntity(InboxEntryDTO inboxEntryDTO);
+
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "userId", ignore = true)
+    void partialUpdate(@MappingTarget InboxEntry entity, InboxEntryDTO dto);
+}
@@ -17,6 +17,28 @@ public interface MessageMapper extends EntityMapper<MessageDTO, Message> {
     @Mapping(target = "chatRoom", source = "chatRoom", qualifiedByName = "chatRoomId")
     MessageDTO toDto(Message s);
 
+    @Mapping(target = "chatRoom.lastMessage", ignore = true)
+    @Mapping(target = "chatRoom.lastMessageAt", ignore = true)
+    @Mapping(target = "chatRoom.lastSeq", ignore = true)
+    @Mapping(target = "chatRoom.version", ignore = true)
+    Message toEntity(MessageDTO messageDTO);
+
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "chatRoom.lastMessage", ignore = true)
+    @Mapping(target = "chatRoom.lastMessageAt", ignore = true)
+    @Mapping(target = "chatRoom.lastSeq", ignore = true)
+    @Mapping(target = "chatRoom.version", ignore = true)
+    void partialUpdate(@MappingTarget Message message, MessageDTO messageDTO);
+
+    /**
+     * Map a message without touching its user and chat room, which may be uninitialized references.
+     */
+    @Named("withoutAssociations")
+    @Mapping(target = "user", ignore = true)
+    @Mapping(target = "chatRoom", ignore = true)
+    MessageDTO toDtoWithoutAssociations(Message s);
+
     @Named("userId")
     @BeanMapping(ignoreByDefault = true)
     @Mapping(target = "id", source = "id")
@@ -0,0 +1,34 @@
+package com.daniinc.chatapp.service.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utility class to defer work until the current transaction commits, so that in-memory state never reflects uncommitted
+ * or rolled back data.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {}
+
+    /**
+     * Run an action once the current transaction commits, or right away when there is no transaction. The action is
+     * dropped when the transaction rolls back.
+     *
+     * @param action the action to run.
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                }
+            );
+        } else {
+            action.run();
+        }
+    }
+}
@@ -16,9 +16,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -139,14 +142,23 @@ public class ChatRoomResource {
      * {@code GET  /chat-rooms} : get all the chatRooms.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of chatRooms in body.
+     * @param request the request, answered with {@code 304 (Not Modified)} when its {@code If-None-Match} is still current.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of chatRooms in body, or with status
+     * {@code 304 (Not Modified)}.
      */
     @GetMapping("")
-    public ResponseEntity<List<ChatRoomDTO>> getAllChatRooms(@org.springdoc.core.annotations.ParameterObject Pageable pageable) {
+    public ResponseEntity<List<ChatRoomDTO>> getAllChatRooms(
+        @org.springdoc.core.annotations.ParameterObject Pageable pageable,
+        WebRequest request
+    ) {
         log.debug("REST request to get a page of ChatRooms");
+        // the ETag is read before the rooms, so that a concurrent change can only make it older than the body
+        if (request.checkNotModified(chatRoomService.getRoomListETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache().cachePrivate()).build();
+        }
         Page<ChatRoomDTO> page = chatRoomService.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        return ResponseEntity.ok().headers(headers).cacheControl(CacheControl.noCache().cachePrivate()).body(page.getContent());
     }
 
     /**
@@ -0,0 +1,80 @@
+package com.daniinc.chatapp.web.rest;
+
+import com.daniinc.chatapp.service.InboxService;
+import com.daniinc.chatapp.service.dto.InboxEntryDTO;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for reading the inbox of the current user, see {@link com.daniinc.chatapp.domain.InboxEntry}.
+ */
+@RestController
+@RequestMapping("/api/inbox")
+public class InboxResource {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final Logger log = LoggerFactory.getLogger(InboxResource.class);
+
+    private final InboxService inboxService;
+
+    public InboxResource(InboxService inboxService) {
+        this.inboxService = inboxService;
+    }
+
+    /**
+     * {@code GET  /inbox} : get the rooms of the current user page by page, most recently active first, without offsets.
+     *
+     * @param beforeActivityAt the {@code lastActivityAt} of the last entry already loaded, absent for the first page.
+     * @param beforeRoomId the {@code chatRoomId} of the last entry already loaded, absent for the first page.
+     * @param limit the maximum number of entries to return, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of inbox entries in body. A page shorter
+     * than {@code limit} is the last one.
+     */
+    @GetMapping("")
+    public ResponseEntity<List<InboxEntryDTO>> getInbox(
+        @RequestParam(value = "beforeActivityAt", required = false) @DateTimeFormat(
+            iso = DateTimeFormat.ISO.DATE_TIME
+        ) ZonedDateTime beforeActivityAt,
+        @RequestParam(value = "beforeRoomId", required = false) Long beforeRoomId,
+        @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        log.debug("REST request to get the inbox before {} / {}", beforeActivityAt, beforeRoomId);
+        return ResponseEntity.ok().body(inboxService.findInbox(beforeActivityAt, beforeRoomId, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * {@code GET  /inbox/unread} : get the unread counts of all the rooms of the current user.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of unread messages by chat room id in body.
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<Map<Long, Long>> getUnreadCounts() {
+        log.debug("REST request to get the unread counts");
+        return ResponseEntity.ok().body(inboxService.findUnreadCounts());
+    }
+
+    /**
+     * {@code PUT  /inbox/:roomId/read} : mark the messages of a room read by the current user.
+     *
+     * @param roomId the id of the chat room.
+     * @param messageId the id of the last message read, absent for all the messages of the room.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the updated inbox entry in body, or with status
+     * {@code 404 (Not Found)} if the current user does not take part in the room.
+     */
+    @PutMapping("/{roomId}/read")
+    public ResponseEntity<InboxEntryDTO> markRead(
+        @PathVariable("roomId") Long roomId,
+        @RequestParam(value = "messageId", required = false) Long messageId
+    ) {
+        log.debug("REST request to mark room {} read up to {}", roomId, messageId);
+        return ResponseUtil.wrapOrNotFound(inboxService.markRead(roomId, messageId));
+    }
+}
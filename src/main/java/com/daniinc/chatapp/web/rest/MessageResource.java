@@ -1,7 +1,11 @@
 package com.daniinc.chatapp.web.rest;
 
 import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.security.AuthoritiesConstants;
+import com.daniinc.chatapp.service.MessageExportService;
+import com.daniinc.chatapp.service.MessageSearchIndex;
 import com.daniinc.chatapp.service.MessageService;
+import com.daniinc.chatapp.service.dto.MediaItemDTO;
 import com.daniinc.chatapp.service.dto.MessageDTO;
 import com.daniinc.chatapp.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
@@ -9,15 +13,22 @@ import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -34,6 +45,8 @@ public class MessageResource {
 
     private static final String ENTITY_NAME = "message";
 
+    private static final int MAX_LIMIT = 200;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -41,9 +54,20 @@ public class MessageResource {
 
     private final MessageRepository messageRepository;
 
-    public MessageResource(MessageService messageService, MessageRepository messageRepository) {
+    private final MessageSearchIndex messageSearchIndex;
+
+    private final MessageExportService messageExportService;
+
+    public MessageResource(
+        MessageService messageService,
+        MessageRepository messageRepository,
+        MessageSearchIndex messageSearchIndex,
+        MessageExportService messageExportService
+    ) {
         this.messageService = messageService;
         this.messageRepository = messageRepository;
+        this.messageSearchIndex = messageSearchIndex;
+        this.messageExportService = messageExportService;
     }
 
     /**
@@ -151,16 +175,151 @@ public class MessageResource {
     }
 
     /**
-     * {@code GET  /messages/:id} : get the "id" message.
+     * {@code GET  /messages/:roomId} : get a page of the messages of a room.
      *
-     * @param id the id of the messageDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the messageDTO, or with status {@code 404 (Not Found)}.
+     * @param roomId the id of the chat room.
+     * @param pageable the pagination information.
+     * @param request the request, answered with {@code 304 (Not Modified)} when its {@code If-None-Match} is still current.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of messages in body, or with status
+     * {@code 304 (Not Modified)}.
      */
     @GetMapping("/{roomId}")
-    public ResponseEntity<Page<MessageDTO>> getMessage(@PathVariable("roomId") Long roomId, Pageable pageable) {
+    public ResponseEntity<Page<MessageDTO>> getMessage(@PathVariable("roomId") Long roomId, Pageable pageable, WebRequest request) {
         log.debug("REST request to get Message : {}", roomId);
+        // the ETag is read before the messages, so that a concurrent change can only make it older than the body
+        if (request.checkNotModified(messageService.getRoomETag(roomId))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache().cachePrivate()).build();
+        }
         Page<MessageDTO> page = messageService.getMessegesByRoomId(roomId, pageable);
-        return ResponseEntity.status(HttpStatus.OK).body(page);
+        return ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache().cachePrivate()).body(page);
+    }
+
+    /**
+     * {@code GET  /messages/:roomId/history} : get the messages of a room page by page, newest first, without offsets.
+     *
+     * @param roomId the id of the chat room.
+     * @param before the id of the oldest message already loaded, absent for the first page.
+     * @param limit the maximum number of messages to return, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of messages in body, newest first.
+     * The id of the last one is the {@code before} cursor of the next page, a page shorter than {@code limit} is the last one.
+     */
+    @GetMapping("/{roomId}/history")
+    public ResponseEntity<List<MessageDTO>> getMessageHistory(
+        @PathVariable("roomId") Long roomId,
+        @RequestParam(value = "before", required = false) Long before,
+        @RequestParam(value = "limit", defaultValue = "50") int limit
+    ) {
+        log.debug("REST request to get Messages of room {} before {}", roomId, before);
+        return ResponseEntity.ok().body(messageService.getMessageHistory(roomId, before, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * {@code GET  /messages/search} : search the messages of the rooms of the current user, newest first.
+     *
+     * @param query the words to search, the last one may be incomplete.
+     * @param roomId the id of the chat room to search in, absent for all the rooms of the current user.
+     * @param before the id of the oldest message already found, absent for the first page.
+     * @param limit the maximum number of messages to return, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of messages in body, newest first.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<MessageDTO>> searchMessages(
+        @RequestParam("query") String query,
+        @RequestParam(value = "roomId", required = false) Long roomId,
+        @RequestParam(value = "before", required = false) Long before,
+        @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        log.debug("REST request to search Messages for {} in room {} before {}", query, roomId, before);
+        return ResponseEntity.ok().body(messageService.search(query, roomId, before, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * {@code POST  /messages/search/rebuild} : rebuild the message search index from the database, in the background.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}, or with status {@code 409 (Conflict)} if the
+     * index is already being rebuilt.
+     */
+    @PostMapping("/search/rebuild")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        log.debug("REST request to rebuild the message search index");
+        return ResponseEntity.status(messageSearchIndex.rebuild() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * {@code GET  /messages/:roomId/export} : export the whole history of a room as NDJSON, one message per line, oldest first.
+     * The response is streamed while the messages are read.
+     *
+     * @param roomId the id of the chat room.
+     * @param gzip whether to compress the export.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the messages as an attachment in body.
+     */
+    @GetMapping("/{roomId}/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+        @PathVariable("roomId") Long roomId,
+        @RequestParam(value = "gzip", defaultValue = "false") boolean gzip
+    ) {
+        log.debug("REST request to export the Messages of room {}", roomId);
+        // checked on the request thread, the body is written by an async task
+        messageService.checkParticipant(roomId);
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                messageExportService.export(roomId, compressed);
+                compressed.finish();
+            } else {
+                messageExportService.export(roomId, out);
+            }
+        };
+        String filename = "room-" + roomId + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .body(body);
+    }
+
+    /**
+     * {@code GET  /messages/:roomId/media} : get the media gallery of a room page by page, newest first, without offsets.
+     *
+     * @param roomId the id of the chat room.
+     * @param before the id of the oldest media already loaded, absent for the first page.
+     * @param limit the maximum number of media to return, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of media in body, newest first.
+     * The id of the last one is the {@code before} cursor of the next page, a page shorter than {@code limit} is the last one.
+     */
+    @GetMapping("/{roomId}/media")
+    public ResponseEntity<List<MediaItemDTO>> getMediaGallery(
+        @PathVariable("roomId") Long roomId,
+        @RequestParam(value = "before", required = false) Long before,
+        @RequestParam(value = "limit", defaultValue = "50") int limit
+    ) {
+        log.debug("REST request to get the media of room {} before {}", roomId, before);
+        return ResponseEntity.ok().body(messageService.getMediaGallery(roomId, before, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * {@code GET  /messages/:roomId/range} : get the messages of a room by sequence number, to fill a gap after a reconnect.
+     *
+     * @param roomId the id of the chat room.
+     * @param fromSeq the first sequence number to return.
+     * @param toSeq the last sequence number to return, defaults to {@code fromSeq + limit - 1}.
+     * @param limit the maximum number of messages to return, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of messages in body, ordered by sequence number.
+     */
+    @GetMapping("/{roomId}/range")
+    public ResponseEntity<List<MessageDTO>> getMessageRange(
+        @PathVariable("roomId") Long roomId,
+        @RequestParam("fromSeq") long fromSeq,
+        @RequestParam(value = "toSeq", required = false) Long toSeq,
+        @RequestParam(value = "limit", defaultValue = "" + MAX_LIMIT) int limit
+    ) {
+        log.debug("REST request to get Messages of room {} from seq {} to {}", roomId, fromSeq, toSeq);
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        long lastSeq = toSeq != null ? toSeq : fromSeq + size - 1;
+        if (fromSeq < 1 || lastSeq < fromSeq) {
+            throw new BadRequestAlertException("Invalid sequence range", ENTITY_NAME, "seqinvalid");
+        }
+        return ResponseEntity.ok().body(messageService.getMessagesByRoomIdAndSeqRange(roomId, fromSeq, lastSeq, size));
     }
 
     /**
@@ -1,7 +1,7 @@
 package com.daniinc.chatapp.web.rest;
 
 import com.daniinc.chatapp.domain.User;
-import com.daniinc.chatapp.repository.UserRepository;
+import com.daniinc.chatapp.service.UserSearchIndex;
 import com.daniinc.chatapp.service.UserService;
 import com.daniinc.chatapp.service.dto.UserDTO;
 import java.util.*;
@@ -29,11 +29,11 @@ public class PublicUserResource {
     private final Logger log = LoggerFactory.getLogger(PublicUserResource.class);
 
     private final UserService userService;
-    private final UserRepository userRepository;
+    private final UserSearchIndex userSearchIndex;
 
-    public PublicUserResource(UserService userService, UserRepository userRepository) {
+    public PublicUserResource(UserService userService, UserSearchIndex userSearchIndex) {
         this.userService = userService;
-        this.userRepository = userRepository;
+        this.userSearchIndex = userSearchIndex;
     }
 
     /**
@@ -58,9 +58,17 @@ public class PublicUserResource {
         return pageable.getSort().stream().map(Sort.Order::getProperty).allMatch(ALLOWED_ORDERED_PROPERTIES::contains);
     }
 
+    /**
+     * {@code GET /find-users} : search the activated users by their first name, last name and login.
+     *
+     * @param query the search terms, each matching the start of a word of the user.
+     * @param pageable the pagination information, results are ranked by relevance.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the matching users.
+     */
     @GetMapping("/find-users")
     public ResponseEntity<List<UserDTO>> searchInUsers(@RequestParam String query, Pageable pageable) {
-        Page<UserDTO> page = userRepository.findUsersBySearch(query, pageable).map(UserDTO::new);
+        log.debug("REST request to search Users : {}", query);
+        Page<UserDTO> page = userSearchIndex.search(query, pageable);
 
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
@@ -0,0 +1,43 @@
+package com.daniinc.chatapp.web.rest;
+
+import com.daniinc.chatapp.service.ChangeFeedService;
+import com.daniinc.chatapp.service.dto.SyncDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for the delta sync of reconnecting clients, see {@link com.daniinc.chatapp.domain.ChangeFeedEntry}.
+ */
+@RestController
+@RequestMapping("/api/sync")
+public class SyncResource {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(SyncResource.class);
+
+    private final ChangeFeedService changeFeedService;
+
+    public SyncResource(ChangeFeedService changeFeedService) {
+        this.changeFeedService = changeFeedService;
+    }
+
+    /**
+     * {@code GET  /sync} : get the new messages, room changes and membership changes of the current user since a cursor.
+     *
+     * @param cursor the cursor returned by the previous sync, absent for the first one.
+     * @param limit the maximum number of changes to read, at most {@value #MAX_LIMIT}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the changes in body. When {@code reset} is set, the
+     * client reloads its rooms; when {@code hasMore} is set, it syncs again from the new cursor right away.
+     */
+    @GetMapping("")
+    public ResponseEntity<SyncDTO> sync(
+        @RequestParam(value = "cursor", required = false) Long cursor,
+        @RequestParam(value = "limit", defaultValue = "200") int limit
+    ) {
+        log.debug("REST request to sync from {}", cursor);
+        return ResponseEntity.ok().body(changeFeedService.sync(cursor, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+}
@@ -1,63 +1,88 @@
 package com.daniinc.chatapp.web.websocket;
 
-import com.daniinc.chatapp.service.UserService;
-import com.daniinc.chatapp.service.dto.AdminUserDTO;
 import com.daniinc.chatapp.service.dto.UserDTO;
-import java.security.Principal;
-import java.util.*;
+import com.daniinc.chatapp.web.websocket.dto.PresenceDTO;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
+/**
+ * Tracks the STOMP sessions in the {@link PresenceRegistry}, which publishes the users going online or offline to their
+ * contacts on {@value PresenceRegistry#DESTINATION}.
+ */
 @Controller
 public class ActiveUserService {
 
     private static final Logger log = LoggerFactory.getLogger(ActiveUserService.class);
 
-    private final UserService userService;
-    private final ActiveUsers activeUsers;
-    private final SimpMessageSendingOperations messagingTemplate;
+    private final SessionUserInterceptor sessionUserInterceptor;
+    private final PresenceRegistry presenceRegistry;
 
-    public ActiveUserService(UserService userService, ActiveUsers activeUsers, SimpMessageSendingOperations messagingTemplate) {
-        this.userService = userService;
-        this.activeUsers = activeUsers;
-        this.messagingTemplate = messagingTemplate;
+    public ActiveUserService(SessionUserInterceptor sessionUserInterceptor, PresenceRegistry presenceRegistry) {
+        this.sessionUserInterceptor = sessionUserInterceptor;
+        this.presenceRegistry = presenceRegistry;
     }
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String username = Objects.requireNonNull(event.getUser()).getName();
-        Optional<AdminUserDTO> adminUserDTO = userService.getUserWithAuthoritiesByLogin(username).map(AdminUserDTO::new);
-        adminUserDTO.ifPresent(activeUsers::addUser);
-        //        messagingTemplate.convertAndSend("/ws/receive/users", activeUsers.getUsers());
+        SessionUser sessionUser = sessionUserInterceptor.resolve(headerAccessor.getSessionAttributes(), event.getUser());
+        if (sessionUser != null) {
+            presenceRegistry.connected(headerAccessor.getSessionId(), sessionUser);
+        }
     }
 
+    /**
+     * Get the online contacts of the user: a subscription to {@code /app/presence} receives this snapshot once. Clients
+     * subscribe to {@code /user/{userId}/queue/presence} first, then get the snapshot and apply the changes with a greater
+     * version.
+     */
+    @SubscribeMapping("/presence")
+    public PresenceDTO handleActiveUsers(SessionUser sessionUser) {
+        return presenceRegistry.snapshot(sessionUser.id());
+    }
+
+    /**
+     * Get all the online users on {@value PresenceRegistry#LEGACY_DESTINATION}, which also gets them again whenever a user
+     * goes online or offline.
+     *
+     * @deprecated kept until the clients move to {@code /app/presence}, see {@link #handleActiveUsers(SessionUser)}.
+     */
+    @Deprecated
     @MessageMapping("/ws/getusers")
-    @SendTo("/topic/users")
-    public Collection<AdminUserDTO> handleActiveUsers(Principal principal) {
-        return activeUsers.getUsers();
+    @SendTo(PresenceRegistry.LEGACY_DESTINATION)
+    public List<UserDTO> handleGetUsers() {
+        return presenceRegistry.onlineUsers();
     }
 
     @EventListener
-    public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+    public void handleSubscribeListener(SessionSubscribeEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headerAccessor.getSessionId();
-        log.info("Web socket connection closed: {}", sessionId); // Session ID logolása
-        String username = Objects.requireNonNull(event.getUser()).getName();
+        if (PresenceRegistry.LEGACY_DESTINATION.equals(headerAccessor.getDestination())) {
+            presenceRegistry.legacySubscribed(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribeListener(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        presenceRegistry.unsubscribed(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+    }
 
-        Optional<AdminUserDTO> adminUserDTO = userService.getUserWithAuthoritiesByLogin(username).map(AdminUserDTO::new);
-        adminUserDTO.ifPresent(activeUsers::removeUser);
-        messagingTemplate.convertAndSend("/topic/users", activeUsers.getUsers());
+    @EventListener
+    public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+        String sessionId = event.getSessionId();
+        log.info("Web socket connection closed: {}", sessionId); // Session ID logolása
+        presenceRegistry.disconnected(sessionId);
     }
 }
@@ -0,0 +1,80 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Sends the same payload to many destinations while serializing it only once.
+ * <p>
+ * {@link SimpMessagingTemplate#convertAndSend(String, Object)} runs the message converter for every destination. Here the
+ * payload is {@link #encode(Object) encoded} to JSON once and the resulting bytes are shared by all the frames built from it.
+ */
+@Component
+public class MessageBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    public MessageBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serialize a payload to JSON.
+     *
+     * @param payload the object to serialize.
+     * @return the encoded payload, to be passed to {@link #send(String, Payload)} any number of times.
+     */
+    public Payload encode(Object payload) {
+        try {
+            return new Payload(objectMapper.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    public void send(String destination, Payload payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        MessageHeaders headers = accessor.getMessageHeaders();
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload.bytes(), headers));
+    }
+
+    public void sendToUser(String user, String destination, Payload payload) {
+        String prefix = messagingTemplate.getUserDestinationPrefix();
+        send(prefix + user + (destination.startsWith("/") ? destination : "/" + destination), payload);
+    }
+
+    /**
+     * An already serialized JSON payload. Its bytes are shared between frames and must not be modified.
+     */
+    public record Payload(byte[] bytes) {
+        /**
+         * Join encoded payloads into a JSON array without serializing them again.
+         */
+        public static Payload array(List<Payload> elements) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(elements.stream().mapToInt(element -> element.bytes().length + 1).sum() + 1);
+            out.write('[');
+            for (int i = 0; i < elements.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.writeBytes(elements.get(i).bytes());
+            }
+            out.write(']');
+            return new Payload(out.toByteArray());
+        }
+    }
+}
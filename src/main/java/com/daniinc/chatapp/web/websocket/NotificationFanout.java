@@ -0,0 +1,217 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+/**
+ * Delivers message notifications to the participants of a room off the inbound STOMP threads.
+ * <p>
+ * Notifications are queued per user and flushed every {@code application.notifications.coalesce-window-ms}. The pending
+ * messages of a user are sent in one frame, as an array, on {@code /queue/notification-batches} if one of their sessions
+ * subscribed there, and one {@link com.daniinc.chatapp.service.dto.MessageDTO} per frame on {@code /queue/notifications} if
+ * one of their sessions subscribed there, so that a client only receives the destination it opted into. Frames are sent on
+ * a dedicated executor, backed by virtual threads when the JVM supports them.
+ * <p>
+ * The number of queued notifications is exported as the {@code chatapp.notifications.pending} gauge, and the time from
+ * publication to delivery as the {@code chatapp.notifications.fanout} timer.
+ */
+@Component
+public class NotificationFanout {
+
+    private final Logger log = LoggerFactory.getLogger(NotificationFanout.class);
+
+    private static final String SINGLE_DESTINATION = "/queue/notifications";
+
+    private static final String BATCH_DESTINATION = "/queue/notification-batches";
+
+    private final NotificationService notificationService;
+
+    private final SessionUserInterceptor sessionUserInterceptor;
+
+    // session id -> subscription id -> subscription of the session to one of the notification destinations
+    private final Map<String, Map<String, Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    // user id -> number of subscriptions of the user to the single notification destination
+    private final Map<Long, Integer> singleSubscribers = new ConcurrentHashMap<>();
+
+    // user id -> number of subscriptions of the user to the batch notification destination
+    private final Map<Long, Integer> batchSubscribers = new ConcurrentHashMap<>();
+
+    private final Map<Long, List<PendingNotification>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer fanoutTimer;
+
+    private final ExecutorService executor;
+
+    private final ScheduledExecutorService flusher;
+
+    public NotificationFanout(
+        NotificationService notificationService,
+        SessionUserInterceptor sessionUserInterceptor,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.notificationService = notificationService;
+        this.sessionUserInterceptor = sessionUserInterceptor;
+        ApplicationProperties.Notifications properties = applicationProperties.getNotifications();
+        Gauge.builder("chatapp.notifications.pending", queued, AtomicInteger::get)
+            .description("Notifications waiting to be sent")
+            .register(meterRegistry);
+        this.fanoutTimer = Timer.builder("chatapp.notifications.fanout")
+            .description("Time from publication of a message to the delivery of its notification")
+            .register(meterRegistry);
+        this.executor = newExecutor(properties.getThreads());
+        CustomizableThreadFactory flusherThreadFactory = new CustomizableThreadFactory("chatapp-notification-flusher-");
+        flusherThreadFactory.setDaemon(true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(flusherThreadFactory);
+        long window = Math.max(1, properties.getCoalesceWindowMs());
+        this.flusher.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a notification of a message for some users, it is sent within the coalescing window.
+     *
+     * @param userIds the ids of the users to notify.
+     * @param message the message, already encoded so that all the users share the same bytes.
+     */
+    public void publish(long[] userIds, MessageBroadcaster.Payload message) {
+        PendingNotification notification = new PendingNotification(message, System.nanoTime());
+        for (long userId : userIds) {
+            pending.compute(userId, (id, notifications) -> {
+                List<PendingNotification> result = notifications != null ? notifications : new ArrayList<>(2);
+                result.add(notification);
+                return result;
+            });
+            queued.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void handleSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = headerAccessor.getDestination();
+        if (destination == null || headerAccessor.getSessionId() == null || headerAccessor.getSubscriptionId() == null) {
+            return;
+        }
+        boolean batch = destination.endsWith(BATCH_DESTINATION);
+        if (!batch && !destination.endsWith(SINGLE_DESTINATION)) {
+            return;
+        }
+        SessionUser sessionUser = sessionUserInterceptor.resolve(headerAccessor.getSessionAttributes(), event.getUser());
+        if (sessionUser == null) {
+            return;
+        }
+        Subscription subscription = new Subscription(sessionUser.id(), batch);
+        Subscription previous = subscriptions
+            .computeIfAbsent(headerAccessor.getSessionId(), id -> new ConcurrentHashMap<>())
+            .put(headerAccessor.getSubscriptionId(), subscription);
+        if (previous != null) {
+            count(previous, -1);
+        }
+        count(subscription, 1);
+    }
+
+    @EventListener
+    public void handleUnsubscribeListener(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (headerAccessor.getSessionId() == null || headerAccessor.getSubscriptionId() == null) {
+            return;
+        }
+        Map<String, Subscription> sessionSubscriptions = subscriptions.get(headerAccessor.getSessionId());
+        Subscription subscription = sessionSubscriptions != null ? sessionSubscriptions.remove(headerAccessor.getSubscriptionId()) : null;
+        if (subscription != null) {
+            count(subscription, -1);
+        }
+    }
+
+    @EventListener
+    public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+        Map<String, Subscription> sessionSubscriptions = subscriptions.remove(event.getSessionId());
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.values().forEach(subscription -> count(subscription, -1));
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void flush() {
+        for (Long userId : pending.keySet()) {
+            List<PendingNotification> notifications = pending.remove(userId);
+            if (notifications != null) {
+                executor.execute(() -> send(userId, notifications));
+            }
+        }
+    }
+
+    private void send(Long userId, List<PendingNotification> notifications) {
+        try {
+            List<MessageBroadcaster.Payload> messages = notifications.stream().map(PendingNotification::message).toList();
+            if (batchSubscribers.containsKey(userId)) {
+                notificationService.sendNotifications(userId, messages);
+            }
+            if (singleSubscribers.containsKey(userId)) {
+                messages.forEach(message -> notificationService.sendNotification(userId, message));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to notify user {} of {} messages: {}", userId, notifications.size(), e.getMessage());
+        } finally {
+            queued.addAndGet(-notifications.size());
+            long now = System.nanoTime();
+            notifications.forEach(notification -> fanoutTimer.record(now - notification.publishedAt(), TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private void count(Subscription subscription, int delta) {
+        (subscription.batch() ? batchSubscribers : singleSubscribers).merge(subscription.userId(), delta, (count, change) ->
+            count + change > 0 ? count + change : null
+        );
+    }
+
+    private ExecutorService newExecutor(int threads) {
+        if (Runtime.version().feature() >= 21) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Could not create a virtual thread executor, falling back to platform threads", e);
+            }
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chatapp-notification-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory);
+    }
+
+    private record Subscription(Long userId, boolean batch) {}
+
+    private record PendingNotification(MessageBroadcaster.Payload message, long publishedAt) {}
+}
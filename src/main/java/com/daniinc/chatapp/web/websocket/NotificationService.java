@@ -1,6 +1,7 @@
 package com.daniinc.chatapp.web.websocket;
 
 import com.daniinc.chatapp.service.dto.MessageDTO;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
@@ -11,7 +12,21 @@ public class NotificationService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private MessageBroadcaster messageBroadcaster;
+
     public void sendNotification(Long userId, MessageDTO messageDTO) {
         messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/notifications", messageDTO);
     }
+
+    public void sendNotification(Long userId, MessageBroadcaster.Payload payload) {
+        messageBroadcaster.sendToUser(userId.toString(), "/queue/notifications", payload);
+    }
+
+    /**
+     * Send notifications of several messages in one frame, as an array even when there is a single message.
+     */
+    public void sendNotifications(Long userId, List<MessageBroadcaster.Payload> payloads) {
+        messageBroadcaster.sendToUser(userId.toString(), "/queue/notification-batches", MessageBroadcaster.Payload.array(payloads));
+    }
 }
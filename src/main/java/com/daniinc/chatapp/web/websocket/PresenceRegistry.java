@@ -0,0 +1,213 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.daniinc.chatapp.service.RoomMembershipIndex;
+import com.daniinc.chatapp.service.dto.UserDTO;
+import com.daniinc.chatapp.web.websocket.dto.PresenceDTO;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the online users, counting the STOMP sessions of every user: a user comes online with the first session and
+ * goes offline when the last one closes.
+ * <p>
+ * Users going online or offline are not published right away. Every {@code application.presence.coalesce-window-ms}, the
+ * users who changed are compared with the last published state and only the difference is published, with the next
+ * version. A user who reconnects within the window is not published at all. The presence of a user only goes to their
+ * online contacts, the users sharing a room with them (see {@link RoomMembershipIndex#contacts(Long)}): each of them gets
+ * one {@link PresenceDTO} on {@value #DESTINATION} with the changes of their own contacts, so the cost of a change grows
+ * with the contacts of the user and not with the number of online users. New clients get the published state of their
+ * contacts from {@link #snapshot(Long)}, with its version.
+ * <p>
+ * Clients of the former API still get all the online users on {@value #LEGACY_DESTINATION}, sent on every change but only
+ * while such a client is subscribed to it.
+ */
+@Component
+public class PresenceRegistry {
+
+    public static final String DESTINATION = "/queue/presence";
+
+    /**
+     * Destination of all the online users for the clients of the former API, which should use {@value #DESTINATION}.
+     */
+    public static final String LEGACY_DESTINATION = "/topic/users";
+
+    private final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private final MessageBroadcaster messageBroadcaster;
+
+    private final RoomMembershipIndex roomMembershipIndex;
+
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+
+    private final Map<Long, OnlineUser> online = new ConcurrentHashMap<>();
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Set<String>> legacySubscriptions = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final Map<Long, UserDTO> published = new HashMap<>();
+
+    // guarded by this
+    private long version;
+
+    public PresenceRegistry(MessageBroadcaster messageBroadcaster, RoomMembershipIndex roomMembershipIndex) {
+        this.messageBroadcaster = messageBroadcaster;
+        this.roomMembershipIndex = roomMembershipIndex;
+    }
+
+    /**
+     * Count a new session of a user. Calling it again for the same session has no effect.
+     *
+     * @param sessionId the id of the STOMP session.
+     * @param sessionUser the user of the session.
+     */
+    public void connected(String sessionId, SessionUser sessionUser) {
+        if (sessionId == null || sessions.putIfAbsent(sessionId, sessionUser.id()) != null) {
+            return;
+        }
+        online.compute(sessionUser.id(), (userId, current) -> {
+            if (current == null) {
+                changed.add(userId);
+                return new OnlineUser(sessionUser.user(), 1);
+            }
+            return new OnlineUser(current.user(), current.sessions() + 1);
+        });
+    }
+
+    /**
+     * Count a closed session. Calling it again for the same session, or for a session never counted, has no effect.
+     *
+     * @param sessionId the id of the STOMP session.
+     */
+    public void disconnected(String sessionId) {
+        if (sessionId != null) {
+            legacySubscriptions.remove(sessionId);
+        }
+        Long sessionUserId = sessionId != null ? sessions.remove(sessionId) : null;
+        if (sessionUserId == null) {
+            return;
+        }
+        online.computeIfPresent(sessionUserId, (userId, current) -> {
+            if (current.sessions() > 1) {
+                return new OnlineUser(current.user(), current.sessions() - 1);
+            }
+            changed.add(userId);
+            return null;
+        });
+    }
+
+    /**
+     * Get the online contacts of a user, as last published.
+     *
+     * @param userId the id of the user.
+     * @return a snapshot of the online contacts, with the version of the last published change.
+     */
+    public PresenceDTO snapshot(Long userId) {
+        long[] contacts = roomMembershipIndex.contacts(userId);
+        PresenceDTO result = new PresenceDTO();
+        result.setSnapshot(true);
+        synchronized (this) {
+            result.setVersion(version);
+            for (long contactId : contacts) {
+                UserDTO contact = published.get(contactId);
+                if (contact != null) {
+                    result.getJoined().add(contact);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get all the online users, as last published.
+     *
+     * @deprecated only for the clients of {@value #LEGACY_DESTINATION}, use {@link #snapshot(Long)}.
+     */
+    @Deprecated
+    public synchronized List<UserDTO> onlineUsers() {
+        return List.copyOf(published.values());
+    }
+
+    /**
+     * Count a subscription to {@value #LEGACY_DESTINATION}, which is only fed while it has subscriptions.
+     *
+     * @param sessionId the id of the STOMP session.
+     * @param subscriptionId the id of the subscription in the session.
+     */
+    public void legacySubscribed(String sessionId, String subscriptionId) {
+        legacySubscriptions.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriptionId);
+    }
+
+    /**
+     * Forget a subscription, it may or may not be one to {@value #LEGACY_DESTINATION}.
+     *
+     * @param sessionId the id of the STOMP session.
+     * @param subscriptionId the id of the subscription in the session.
+     */
+    public void unsubscribed(String sessionId, String subscriptionId) {
+        legacySubscriptions.computeIfPresent(sessionId, (id, subscriptionIds) -> {
+            subscriptionIds.remove(subscriptionId);
+            return subscriptionIds.isEmpty() ? null : subscriptionIds;
+        });
+    }
+
+    /**
+     * Publish the users who went online or offline since the previous call.
+     * <p>
+     * This is scheduled to get fired every {@code application.presence.coalesce-window-ms}.
+     */
+    @Scheduled(fixedDelayString = "${application.presence.coalesce-window-ms:500}")
+    public synchronized void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<Long, PresenceDTO> deltas = new HashMap<>();
+        boolean publishedChanged = false;
+        for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext();) {
+            Long userId = iterator.next();
+            // removed before reading the state, so a change made meanwhile is seen by the next flush
+            iterator.remove();
+            OnlineUser current = online.get(userId);
+            if (current != null && !published.containsKey(userId)) {
+                published.put(userId, current.user());
+                publishedChanged = true;
+                forOnlineContacts(userId, deltas, delta -> delta.getJoined().add(current.user()));
+            } else if (current == null && published.remove(userId) != null) {
+                publishedChanged = true;
+                forOnlineContacts(userId, deltas, delta -> delta.getLeft().add(userId));
+            }
+        }
+        if (publishedChanged && !legacySubscriptions.isEmpty()) {
+            messageBroadcaster.send(LEGACY_DESTINATION, messageBroadcaster.encode(List.copyOf(published.values())));
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long next = ++version;
+        log.debug("Publishing presence version {} to {} users", next, deltas.size());
+        deltas.forEach((recipientId, delta) -> {
+            delta.setVersion(next);
+            messageBroadcaster.sendToUser(recipientId.toString(), DESTINATION, messageBroadcaster.encode(delta));
+        });
+    }
+
+    private void forOnlineContacts(Long userId, Map<Long, PresenceDTO> deltas, Consumer<PresenceDTO> change) {
+        for (long contactId : roomMembershipIndex.contacts(userId)) {
+            if (online.containsKey(contactId)) {
+                change.accept(deltas.computeIfAbsent(contactId, id -> new PresenceDTO()));
+            }
+        }
+    }
+
+    private record OnlineUser(UserDTO user, int sessions) {}
+}
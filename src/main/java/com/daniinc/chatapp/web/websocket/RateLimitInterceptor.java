@@ -0,0 +1,131 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.daniinc.chatapp.config.ApplicationProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limits inbound STOMP frames by destination prefix, per session and per user.
+ * <p>
+ * Limits are configured in {@code application.rate-limit}. Session buckets live in the session attributes and go away with
+ * the session, user buckets are shared by all the sessions of a user and expire when unused. Frames over the limit are
+ * dropped, or rejected with an ERROR frame which ends the session. Either way they are counted in the
+ * {@code chatapp.websocket.rate-limited} counter.
+ */
+@Component
+public class RateLimitInterceptor implements ChannelInterceptor {
+
+    private static final String SESSION_BUCKETS_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".buckets";
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    private final ApplicationProperties.RateLimit.Action action;
+
+    private final Map<String, ApplicationProperties.RateLimit.Destination> limits;
+
+    private final Cache<String, TokenBucket> userBuckets = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofMinutes(10))
+        .maximumSize(100_000)
+        .build();
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ObjectProvider<MessageChannel> clientOutboundChannel;
+
+    public RateLimitInterceptor(
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        @Qualifier("clientOutboundChannel") ObjectProvider<MessageChannel> clientOutboundChannel
+    ) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        ApplicationProperties.RateLimit rateLimit = applicationProperties.getRateLimit();
+        this.action = rateLimit.getAction();
+        this.limits = rateLimit.getDestinations();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String prefix = destination != null ? matchingPrefix(destination) : null;
+        if (prefix == null) {
+            return message;
+        }
+        ApplicationProperties.RateLimit.Destination limit = limits.get(prefix);
+
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (sessionAttributes != null && !acquire(sessionBuckets(sessionAttributes), prefix, limit.getSession())) {
+            return reject(message, destination, prefix, "session");
+        }
+
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (user != null && !(user instanceof AnonymousAuthenticationToken) && limit.getUser().getPermitsPerSecond() > 0) {
+            TokenBucket bucket = userBuckets.get(user.getName() + '\n' + prefix, key -> newBucket(limit.getUser()));
+            if (!bucket.tryAcquire()) {
+                return reject(message, destination, prefix, "user");
+            }
+        }
+        return message;
+    }
+
+    private String matchingPrefix(String destination) {
+        return limits.keySet().stream().filter(destination::startsWith).max(Comparator.comparingInt(String::length)).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, TokenBucket> sessionBuckets(Map<String, Object> sessionAttributes) {
+        return (Map<String, TokenBucket>) sessionAttributes.computeIfAbsent(SESSION_BUCKETS_ATTRIBUTE, key -> new ConcurrentHashMap<>());
+    }
+
+    private boolean acquire(Map<String, TokenBucket> buckets, String prefix, ApplicationProperties.RateLimit.Bucket limit) {
+        return limit.getPermitsPerSecond() <= 0 || buckets.computeIfAbsent(prefix, key -> newBucket(limit)).tryAcquire();
+    }
+
+    private TokenBucket newBucket(ApplicationProperties.RateLimit.Bucket limit) {
+        return new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst());
+    }
+
+    private Message<?> reject(Message<?> message, String destination, String prefix, String scope) {
+        counters
+            .computeIfAbsent(prefix + '\n' + scope, key ->
+                Counter.builder("chatapp.websocket.rate-limited")
+                    .description("Inbound STOMP frames over the rate limit")
+                    .tag("destination", prefix)
+                    .tag("scope", scope)
+                    .tag("action", action.name().toLowerCase())
+                    .register(meterRegistry)
+            )
+            .increment();
+        log.debug("Rate limit of {} exceeded per {} by {}", prefix, scope, SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (action == ApplicationProperties.RateLimit.Action.ERROR) {
+            // sent explicitly: with receive order preserved, exceptions thrown here never reach the client
+            StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+            error.setMessage("Rate limit exceeded for " + destination);
+            error.setSessionId(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            clientOutboundChannel.getObject().send(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders()));
+        }
+        return null;
+    }
+}
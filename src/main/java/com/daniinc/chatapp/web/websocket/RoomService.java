@@ -1,27 +1,30 @@
 package com.daniinc.chatapp.web.websocket;
 
 import com.daniinc.chatapp.domain.ChatRoom;
-import com.daniinc.chatapp.domain.Message;
-import com.daniinc.chatapp.domain.User;
-import com.daniinc.chatapp.repository.ChatRoomRepository;
 import com.daniinc.chatapp.service.ChatRoomService;
-import com.daniinc.chatapp.service.UserService;
+import com.daniinc.chatapp.service.InboxService;
+import com.daniinc.chatapp.service.MessageBatchWriter;
+import com.daniinc.chatapp.service.RoomMembershipIndex;
 import com.daniinc.chatapp.service.dto.ChatRoomDTO;
+import com.daniinc.chatapp.service.dto.InboxEntryDTO;
 import com.daniinc.chatapp.service.dto.MessageDTO;
-import com.daniinc.chatapp.service.dto.UserDTO;
 import com.daniinc.chatapp.service.mapper.ChatRoomMapper;
-import com.daniinc.chatapp.service.mapper.UserMapper;
-import java.security.Principal;
-import java.util.Optional;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
 @Controller
 public class RoomService {
 
+    private static final Logger log = LoggerFactory.getLogger(RoomService.class);
+
     @Autowired
     private ChatRoomService chatRoomService;
 
@@ -29,43 +32,57 @@ public class RoomService {
     private ChatRoomMapper chatRoomMapper;
 
     @Autowired
-    private NotificationService notificationService;
+    private NotificationFanout notificationFanout;
 
     @Autowired
-    private UserService userService;
+    private MessageBroadcaster messageBroadcaster;
 
     @Autowired
-    private UserMapper userMapper;
+    private MessageBatchWriter messageBatchWriter;
 
     @Autowired
-    private ChatRoomRepository chatRoomRepository;
-
-    @MessageMapping("/chat.sendMessage/{roomId}")
-    @SendTo("/topic/{roomId}")
-    public MessageDTO sendMessage(@DestinationVariable Long roomId, MessageDTO messageDTO, Principal principal) {
-        String username = principal.getName();
-        Optional<User> loggedInUser = userService.getUserWithAuthoritiesByLogin(username);
-
-        User user = loggedInUser.orElseThrow(() -> new RuntimeException("User not found"));
-
-        UserDTO userDTO = userMapper.userToUserDTO(user);
+    private RoomMembershipIndex roomMembershipIndex;
 
-        ChatRoomDTO chatRoomDTO = chatRoomRepository
-            .findById(roomId)
-            .map(chatRoomMapper::toDto)
-            .orElseThrow(() -> new RuntimeException("Chat room not found"));
-
-        messageDTO.setUser(userDTO);
-
-        MessageDTO result = chatRoomService.saveMessage(roomId, messageDTO);
+    @Autowired
+    private InboxService inboxService;
 
-        chatRoomDTO
-            .getParticipants()
-            .forEach(participant -> {
-                notificationService.sendNotification(participant.getId(), result);
+    @MessageMapping("/chat.sendMessage/{roomId}")
+    public void sendMessage(@DestinationVariable Long roomId, MessageDTO messageDTO, SessionUser sessionUser) {
+        // a room without members does not exist, so this also rejects unknown rooms
+        if (!roomMembershipIndex.isMember(roomId, sessionUser.id())) {
+            throw new RuntimeException("Chat room not found");
+        }
+
+        messageDTO.setUser(sessionUser.user());
+
+        // the inbound thread returns right away, the message is broadcast once its batch is committed, off the writer thread
+        messageBatchWriter
+            .submit(roomId, messageDTO)
+            .whenComplete((result, error) -> {
+                if (error != null) {
+                    log.warn("Failed to send a message of user {} to room {}: {}", sessionUser.id(), roomId, error.getMessage());
+                    messageBroadcaster.sendToUser(
+                        sessionUser.id().toString(),
+                        "/queue/errors",
+                        messageBroadcaster.encode(Map.of("roomId", roomId, "message", "error.messageNotSent"))
+                    );
+                    return;
+                }
+                // encoded once, the room topic and every notification share the same bytes
+                MessageBroadcaster.Payload payload = messageBroadcaster.encode(result);
+                messageBroadcaster.send("/topic/" + roomId, payload);
+                notificationFanout.publish(roomMembershipIndex.members(roomId), payload);
             });
+    }
 
-        return result;
+    /**
+     * Mark the messages of a room read, up to the message id in the payload or up to the last one if there is none. The
+     * updated inbox entry is sent back to all the sessions of the user.
+     */
+    @MessageMapping("/chat.markRead/{roomId}")
+    @SendToUser(destinations = "/queue/inbox", broadcast = true)
+    public InboxEntryDTO markRead(@DestinationVariable Long roomId, @Payload(required = false) Long messageId, SessionUser sessionUser) {
+        return inboxService.markRead(roomId, sessionUser.id(), messageId).orElseThrow(() -> new RuntimeException("Chat room not found"));
     }
 
     @MessageMapping("/chat.newRoom")
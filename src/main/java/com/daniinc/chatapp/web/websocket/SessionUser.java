@@ -0,0 +1,16 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.daniinc.chatapp.service.dto.UserDTO;
+
+/**
+ * The user of a STOMP session, resolved once at CONNECT and kept in the session attributes.
+ * <p>
+ * {@code @MessageMapping} methods can declare a parameter of this type to get it, see {@link SessionUserArgumentResolver}.
+ *
+ * @param id the id of the user.
+ * @param login the login of the user.
+ * @param user the public view of the user, attached to the messages the user sends and listed among the online users.
+ */
+public record SessionUser(Long id, String login, UserDTO user) {
+    public static final String SESSION_ATTRIBUTE = SessionUser.class.getName();
+}
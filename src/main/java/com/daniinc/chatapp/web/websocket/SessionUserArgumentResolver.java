@@ -0,0 +1,38 @@
+package com.daniinc.chatapp.web.websocket;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves {@link SessionUser} arguments of {@code @MessageMapping} methods from the STOMP session attributes.
+ */
+@Component
+public class SessionUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final SessionUserInterceptor sessionUserInterceptor;
+
+    public SessionUserArgumentResolver(SessionUserInterceptor sessionUserInterceptor) {
+        this.sessionUserInterceptor = sessionUserInterceptor;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return SessionUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, Message<?> message) {
+        SessionUser sessionUser = sessionUserInterceptor.resolve(
+            SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders()),
+            SimpMessageHeaderAccessor.getUser(message.getHeaders())
+        );
+        if (sessionUser == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return sessionUser;
+    }
+}
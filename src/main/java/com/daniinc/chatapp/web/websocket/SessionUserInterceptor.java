@@ -0,0 +1,68 @@
+package com.daniinc.chatapp.web.websocket;
+
+import com.daniinc.chatapp.service.UserService;
+import com.daniinc.chatapp.service.mapper.UserMapper;
+import java.security.Principal;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the {@link SessionUser} of a STOMP session when it connects, so that the frames sent afterwards need no user lookup.
+ */
+@Component
+public class SessionUserInterceptor implements ChannelInterceptor {
+
+    private final Logger log = LoggerFactory.getLogger(SessionUserInterceptor.class);
+
+    private final UserService userService;
+
+    private final UserMapper userMapper;
+
+    public SessionUserInterceptor(UserService userService, UserMapper userMapper) {
+        this.userService = userService;
+        this.userMapper = userMapper;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+            resolve(accessor.getSessionAttributes(), accessor.getUser());
+        }
+        return message;
+    }
+
+    /**
+     * Get the user of a session, looking it up and storing it in the session attributes the first time.
+     *
+     * @param sessionAttributes the attributes of the STOMP session.
+     * @param principal the authenticated principal of the session.
+     * @return the user of the session, or {@code null} if the session is anonymous or the user does not exist.
+     */
+    public SessionUser resolve(Map<String, Object> sessionAttributes, Principal principal) {
+        if (sessionAttributes != null && sessionAttributes.get(SessionUser.SESSION_ATTRIBUTE) instanceof SessionUser sessionUser) {
+            return sessionUser;
+        }
+        if (principal == null || principal instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        log.debug("Resolving the session user of {}", principal.getName());
+        SessionUser sessionUser = userService
+            .getUserWithAuthoritiesByLogin(principal.getName())
+            .map(user -> new SessionUser(user.getId(), user.getLogin(), userMapper.userToUserDTO(user)))
+            .orElse(null);
+        if (sessionUser != null && sessionAttributes != null) {
+            sessionAttributes.put(SessionUser.SESSION_ATTRIBUTE, sessionUser);
+        }
+        return sessionUser;
+    }
+}
@@ -0,0 +1,43 @@
+package com.daniinc.chatapp.web.websocket;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm.
+ * <p>
+ * The whole state is the theoretical arrival time of the next permit, updated with a compare-and-set, so concurrent callers
+ * never block each other.
+ */
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+
+    private final long toleranceNanos;
+
+    private final AtomicLong theoreticalArrivalTime;
+
+    /**
+     * @param permitsPerSecond the sustained rate.
+     * @param burst the number of permits that can be taken at once by an idle bucket.
+     */
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = emissionIntervalNanos * Math.max(1, burst);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime() - toleranceNanos);
+    }
+
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long tat = theoreticalArrivalTime.get();
+            long next = Math.max(tat, now) + emissionIntervalNanos;
+            if (next - now > toleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.daniinc.chatapp.web.websocket.dto;
+
+import com.daniinc.chatapp.service.dto.UserDTO;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for a change of the online contacts of a user, or for all of them when it is a snapshot.
+ * <p>
+ * Every published change has the next version, and a user only gets the changes of their contacts, so versions have gaps.
+ * A client applies the changes with a version greater than the one of its snapshot.
+ */
+public class PresenceDTO {
+
+    private long version;
+
+    private boolean snapshot;
+
+    private List<UserDTO> joined = new ArrayList<>();
+
+    private List<Long> left = new ArrayList<>();
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Whether {@code joined} holds all the online users, rather than the users who came online since the previous version.
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public List<UserDTO> getJoined() {
+        return joined;
+    }
+
+    public void setJoined(List<UserDTO> joined) {
+        this.joined = joined;
+    }
+
+    /**
+     * The ids of the users who went offline since the previous version.
+     */
+    public List<Long> getLeft() {
+        return left;
+    }
+
+    public void setLeft(List<Long> left) {
+        this.left = left;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "PresenceDTO{" +
+            "version=" + version +
+            ", snapshot=" + snapshot +
+            ", joined=" + joined.size() +
+            ", left=" + left +
+            '}';
+    }
+}
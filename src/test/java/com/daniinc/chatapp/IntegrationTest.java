@@ -0,0 +1,16 @@
+package com.daniinc.chatapp;
+
+import com.daniinc.chatapp.config.AsyncSyncConfiguration;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Base composite annotation for integration tests.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest(classes = { ChatappApp.class, AsyncSyncConfiguration.class })
+public @interface IntegrationTest {}
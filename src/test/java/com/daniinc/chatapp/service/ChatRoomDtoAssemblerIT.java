@@ -0,0 +1,124 @@
+package com.daniinc.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.daniinc.chatapp.IntegrationTest;
+import com.daniinc.chatapp.domain.ChatRoom;
+import com.daniinc.chatapp.domain.Message;
+import com.daniinc.chatapp.domain.Participant;
+import com.daniinc.chatapp.domain.User;
+import com.daniinc.chatapp.repository.ChatRoomRepository;
+import com.daniinc.chatapp.repository.MessageRepository;
+import com.daniinc.chatapp.repository.ParticipantRepository;
+import com.daniinc.chatapp.repository.UserRepository;
+import com.daniinc.chatapp.service.dto.ChatRoomDTO;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link ChatRoomDtoAssembler} service.
+ */
+@IntegrationTest
+class ChatRoomDtoAssemblerIT {
+
+    private static final int ROOMS = 5;
+
+    @Autowired
+    private ChatRoomDtoAssembler chatRoomDtoAssembler;
+
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+
+    @Autowired
+    private ParticipantRepository participantRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> roomIds = new ArrayList<>();
+
+    private final List<Long> messageIds = new ArrayList<>();
+
+    @BeforeEach
+    void createRooms() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            User admin = userRepository.findOneByLogin("admin").orElseThrow();
+            User user = userRepository.findOneByLogin("user").orElseThrow();
+            for (int i = 0; i < ROOMS; i++) {
+                ChatRoom chatRoom = chatRoomRepository.save(new ChatRoom());
+                participantRepository.save(new Participant().chatRoom(chatRoom).user(admin));
+                participantRepository.save(new Participant().chatRoom(chatRoom).user(user));
+                Message message = messageRepository.saveAndFlush(new Message().text("message " + i).seq(1L).chatRoom(chatRoom).user(user));
+                chatRoomRepository.advanceLastMessage(message);
+                roomIds.add(chatRoom.getId());
+                messageIds.add(message.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.executeWithoutResult(status -> {
+            roomIds.forEach(roomId -> chatRoomRepository.setLastMessage(roomId, null, null));
+            messageRepository.deleteAllById(messageIds);
+            participantRepository.deleteAll(participantRepository.findAllWithUserByChatRoomIdIn(roomIds));
+            chatRoomRepository.deleteAllById(roomIds);
+        });
+        roomIds.clear();
+        messageIds.clear();
+    }
+
+    @Test
+    void assemblesAnyNumberOfRoomsWithTheSameNumberOfStatements() {
+        long statementsForOneRoom = statementsToAssemble(roomIds.subList(0, 1));
+        long statementsForAllRooms = statementsToAssemble(roomIds);
+
+        assertThat(statementsForOneRoom).isPositive();
+        assertThat(statementsForAllRooms).isEqualTo(statementsForOneRoom);
+    }
+
+    /**
+     * Load rooms as the room list does, with their participants and last message not initialized, and count the statements
+     * prepared while assembling their DTOs.
+     */
+    private long statementsToAssemble(List<Long> ids) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return transactionTemplate.execute(status -> {
+            List<ChatRoom> chatRooms = chatRoomRepository.findAllById(ids);
+            statistics.clear();
+
+            List<ChatRoomDTO> chatRoomDTOs = chatRoomDtoAssembler.toDtos(chatRooms);
+
+            long statements = statistics.getPrepareStatementCount();
+            assertThat(chatRoomDTOs)
+                .hasSize(ids.size())
+                .allSatisfy(chatRoomDTO -> {
+                    assertThat(chatRoomDTO.getParticipants()).hasSize(2);
+                    assertThat(chatRoomDTO.getLastMessage()).isNotNull();
+                    assertThat(chatRoomDTO.getLastMessage().getUser()).isNotNull();
+                });
+            return statements;
+        });
+    }
+}
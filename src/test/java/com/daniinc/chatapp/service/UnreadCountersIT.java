@@ -0,0 +1,92 @@
+package com.daniinc.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.daniinc.chatapp.IntegrationTest;
+import com.daniinc.chatapp.domain.InboxEntry;
+import com.daniinc.chatapp.repository.InboxEntryRepository;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Integration tests for the {@link UnreadCounters} service.
+ */
+@IntegrationTest
+class UnreadCountersIT {
+
+    private static final long ROOM_ID = 9001L;
+
+    private static final long SENDER_ID = 10L;
+
+    private static final long OTHER_SENDER_ID = 20L;
+
+    private static final long PARTLY_READ_ID = 30L;
+
+    private static final long ALL_READ_ID = 40L;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
+
+    @Autowired
+    private InboxEntryRepository inboxEntryRepository;
+
+    @AfterEach
+    void cleanup() {
+        inboxEntryRepository.deleteAll();
+    }
+
+    @Test
+    void readersOnlyCountTheMessagesAfterTheirMarker() {
+        saveEntry(SENDER_ID, null);
+        saveEntry(OTHER_SENDER_ID, null);
+        saveEntry(PARTLY_READ_ID, 102L);
+        saveEntry(ALL_READ_ID, 105L);
+
+        unreadCounters.add(ROOM_ID, SENDER_ID, new long[] { 101L, 102L, 103L, 104L });
+        unreadCounters.add(ROOM_ID, OTHER_SENDER_ID, new long[] { 105L });
+
+        assertThat(unreadCounters.pending(ROOM_ID, SENDER_ID, null)).isEqualTo(1);
+        assertThat(unreadCounters.pending(ROOM_ID, OTHER_SENDER_ID, null)).isEqualTo(4);
+        assertThat(unreadCounters.pending(ROOM_ID, PARTLY_READ_ID, 102L)).isEqualTo(3);
+        assertThat(unreadCounters.pending(ROOM_ID, ALL_READ_ID, 105L)).isZero();
+
+        unreadCounters.flush(ROOM_ID);
+
+        assertThat(unreadCounters.pending(ROOM_ID, PARTLY_READ_ID, 102L)).isZero();
+        assertThat(unreadCount(SENDER_ID)).isEqualTo(1);
+        assertThat(unreadCount(OTHER_SENDER_ID)).isEqualTo(4);
+        assertThat(unreadCount(PARTLY_READ_ID)).isEqualTo(3);
+        assertThat(unreadCount(ALL_READ_ID)).isZero();
+    }
+
+    @Test
+    void messagesAddedOutOfOrderAreCountedByTheirId() {
+        saveEntry(PARTLY_READ_ID, 203L);
+
+        unreadCounters.add(ROOM_ID, SENDER_ID, new long[] { 204L, 202L });
+        unreadCounters.add(ROOM_ID, SENDER_ID, new long[] { 201L, 205L });
+
+        assertThat(unreadCounters.pending(ROOM_ID, PARTLY_READ_ID, 203L)).isEqualTo(2);
+
+        unreadCounters.flush(ROOM_ID);
+
+        assertThat(unreadCount(PARTLY_READ_ID)).isEqualTo(2);
+    }
+
+    private void saveEntry(long userId, Long lastReadMessageId) {
+        inboxEntryRepository.saveAndFlush(
+            new InboxEntry()
+                .id(ROOM_ID * 100 + userId)
+                .userId(userId)
+                .chatRoomId(ROOM_ID)
+                .lastActivityAt(ZonedDateTime.now())
+                .lastReadMessageId(lastReadMessageId)
+        );
+    }
+
+    private int unreadCount(long userId) {
+        return inboxEntryRepository.findOneByUserIdAndChatRoomId(userId, ROOM_ID).orElseThrow().getUnreadCount();
+    }
+}
@@ -0,0 +1,76 @@
+package com.daniinc.chatapp.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.daniinc.chatapp.service.dto.MessageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/**
+ * Unit tests for the {@link MessageBroadcaster}.
+ */
+class MessageBroadcasterTest {
+
+    private static final int RECIPIENTS = 100;
+
+    private ObjectMapper objectMapper;
+
+    private List<Message<?>> frames;
+
+    private MessageBroadcaster messageBroadcaster;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = spy(new ObjectMapper());
+        frames = new ArrayList<>();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> frames.add(message));
+        messageBroadcaster = new MessageBroadcaster(messagingTemplate, objectMapper);
+    }
+
+    @Test
+    void encodesOnceWhateverTheNumberOfRecipients() throws Exception {
+        MessageBroadcaster.Payload payload = messageBroadcaster.encode(message(1L, "hello"));
+        messageBroadcaster.send("/topic/1", payload);
+        for (long userId = 1; userId <= RECIPIENTS; userId++) {
+            messageBroadcaster.sendToUser(Long.toString(userId), "/queue/notifications", payload);
+        }
+
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+        verify(objectMapper, never()).writeValueAsString(any());
+        assertThat(frames)
+            .hasSize(RECIPIENTS + 1)
+            .allSatisfy(frame -> assertThat(frame.getPayload()).isSameAs(payload.bytes()));
+    }
+
+    @Test
+    void joinsEncodedPayloadsWithoutEncodingThemAgain() throws Exception {
+        MessageBroadcaster.Payload first = messageBroadcaster.encode(message(1L, "first"));
+        MessageBroadcaster.Payload second = messageBroadcaster.encode(message(2L, "second"));
+
+        MessageBroadcaster.Payload array = MessageBroadcaster.Payload.array(List.of(first, second));
+
+        verify(objectMapper, times(2)).writeValueAsBytes(any());
+        assertThat(new String(array.bytes(), StandardCharsets.UTF_8)).isEqualTo(
+            "[" + new String(first.bytes(), StandardCharsets.UTF_8) + "," + new String(second.bytes(), StandardCharsets.UTF_8) + "]"
+        );
+        assertThat(objectMapper.readTree(array.bytes()).size()).isEqualTo(2);
+    }
+
+    private static MessageDTO message(Long id, String text) {
+        MessageDTO messageDTO = new MessageDTO();
+        messageDTO.setId(id);
+        messageDTO.setText(text);
+        return messageDTO;
+    }
+}